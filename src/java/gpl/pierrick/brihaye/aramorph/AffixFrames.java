@@ -0,0 +1,178 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.HashMap;
+
+/** The compatible prefix/suffix combinations, joined once the dictionaries are loaded. The prefixes and suffixes
+ * are few : for each prefix and each suffix, a frame lists the pairs of their {@link EntryGroups groups}
+ * whose categories are compatible, so that the analysis of a word only has to check its stems.
+ * <P>Each pair also knows the stem categories that are compatible with both its prefix and suffix categories.
+ * Pairs with the same categories share this list.</P>
+ * <P>The frames are immutable and can be shared by several threads.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class AffixFrames {
+	
+	/** The number of suffixes. */
+	private int suffixCount;
+	/** The first pair of the frame of each prefix/suffix combination (<CODE>prefix * suffixCount + suffix</CODE>),
+	 * followed by the number of pairs. */
+	private int[] frameStarts;
+	/** The prefix group of each pair. */
+	private int[] prefixGroups;
+	/** The suffix group of each pair. */
+	private int[] suffixGroups;
+	/** The row of {@link #stemCategories} of each pair. */
+	private int[] rows;
+	/** The stem categories compatible with each category combination. */
+	private MorphologyCategories.Matrix stemCategories;
+	/** The stems-suffixes compatibility matrix. */
+	private MorphologyCategories.Matrix BC;
+	
+	/** Joins the prefixes and suffixes.
+	 * @param prefixes Dictionary of prefixes
+	 * @param suffixes Dictionary of suffixes
+	 * @param stemCategoryCount The number of stem categories
+	 * @param AB Compatibility matrix for prefixes-stems categories
+	 * @param AC Compatibility matrix for prefixes-suffixes categories
+	 * @param BC Compatibility matrix for stems-suffixes categories
+	 */
+	AffixFrames(SortedLexicon prefixes, SortedLexicon suffixes, int stemCategoryCount, MorphologyCategories.Matrix AB, MorphologyCategories.Matrix AC, MorphologyCategories.Matrix BC) {
+		suffixCount = suffixes.size();
+		this.BC = BC;
+		frameStarts = new int[prefixes.size() * suffixCount + 1];
+		IntList prefixGroupList = new IntList();
+		IntList suffixGroupList = new IntList();
+		IntList rowList = new IntList();
+		//the row of each category combination met so far : key = A << 16 | C
+		HashMap rowsByCategories = new HashMap();
+		IntList rowPrefixCategories = new IntList();
+		IntList rowSuffixCategories = new IntList();
+		EntryGroups[] suffixGroupsByKey = new EntryGroups[suffixCount];
+		for (int l = 0 ; l < suffixCount ; l++) suffixGroupsByKey[l] = suffixes.getGroups(l);
+		for (int k = 0 ; k < prefixes.size() ; k++) {
+			EntryGroups prefixGroupsOfKey = prefixes.getGroups(k);
+			for (int l = 0 ; l < suffixCount ; l++) {
+				frameStarts[k * suffixCount + l] = prefixGroupList.size();
+				EntryGroups suffixGroupsOfKey = suffixGroupsByKey[l];
+				for (int a = 0 ; a < prefixGroupsOfKey.size() ; a++) {
+					int A = prefixGroupsOfKey.getCategory(a);
+					for (int c = 0 ; c < suffixGroupsOfKey.size() ; c++) {
+						int C = suffixGroupsOfKey.getCategory(c);
+						//Prefix/Suffix compatiblity
+						if (!AC.get(A, C)) continue;
+						Integer combination = new Integer((A << 16) | C);
+						Integer row = (Integer)rowsByCategories.get(combination);
+						if (row == null) {
+							row = new Integer(rowPrefixCategories.size());
+							rowsByCategories.put(combination, row);
+							rowPrefixCategories.add(A);
+							rowSuffixCategories.add(C);
+						}
+						prefixGroupList.add(a);
+						suffixGroupList.add(c);
+						rowList.add(row.intValue());
+					}
+				}
+			}
+		}
+		frameStarts[frameStarts.length - 1] = prefixGroupList.size();
+		prefixGroups = prefixGroupList.toArray();
+		suffixGroups = suffixGroupList.toArray();
+		rows = rowList.toArray();
+		//Prefix/Stem and Stem/Suffix compatibility, for each combination
+		stemCategories = new MorphologyCategories.Matrix(rowPrefixCategories.size(), stemCategoryCount);
+		for (int r = 0 ; r < rowPrefixCategories.size() ; r++) {
+			int A = rowPrefixCategories.get(r);
+			int C = rowSuffixCategories.get(r);
+			for (int B = 0 ; B < stemCategoryCount ; B++) {
+				if (AB.get(A, B) && BC.get(B, C)) stemCategories.set(r, B);
+			}
+		}
+	}
+	
+	/** Returns the first pair of the frame of a prefix and a suffix.
+	 * @param prefix The index of the prefix
+	 * @param suffix The index of the suffix
+	 * @return The pair
+	 */
+	int getFirstPair(int prefix, int suffix) {
+		return frameStarts[prefix * suffixCount + suffix];
+	}
+	
+	/** Returns the end (exclusive) of the pairs of the frame of a prefix and a suffix.
+	 * @param prefix The index of the prefix
+	 * @param suffix The index of the suffix
+	 * @return The end of the pairs. Equal to the first pair if they are not compatible at all
+	 */
+	int getPairLimit(int prefix, int suffix) {
+		return frameStarts[prefix * suffixCount + suffix + 1];
+	}
+	
+	/** Returns the prefix group of a pair.
+	 * @param pair The pair
+	 * @return The index of the group in the {@link EntryGroups groups} of the prefix
+	 */
+	int getPrefixGroup(int pair) {
+		return prefixGroups[pair];
+	}
+	
+	/** Returns the suffix group of a pair.
+	 * @param pair The pair
+	 * @return The index of the group in the {@link EntryGroups groups} of the suffix
+	 */
+	int getSuffixGroup(int pair) {
+		return suffixGroups[pair];
+	}
+	
+	/** Whether or not a stem category is compatible with the prefix and suffix categories of a pair.
+	 * @param pair The pair
+	 * @param B The ID of the stem category
+	 * @return The result
+	 */
+	boolean acceptsStem(int pair, int B) {
+		return stemCategories.get(rows[pair], B);
+	}
+	
+	/** Whether or not a stem category is compatible with a suffix category, whatever the prefix.
+	 * @param B The ID of the stem category
+	 * @param C The ID of the suffix category
+	 * @return The result
+	 */
+	boolean acceptsSuffix(int B, int C) {
+		return BC.get(B, C);
+	}
+	
+	/** Returns the number of pairs.
+	 * @return The number of pairs
+	 */
+	int size() {
+		return prefixGroups.length;
+	}
+	
+}
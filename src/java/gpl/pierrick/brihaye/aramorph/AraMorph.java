@@ -41,16 +41,27 @@ import java.nio.charset.UnsupportedCharsetException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /** A java port of Buckwalter Arabic Morphological Analyzer Version 1.0.
  * Original Perl distribution avalaible from :
  * <a
  * href="http://www.ldc.upenn.edu/Catalog/CatalogEntry.jsp?catalogId=LDC2002L49">LDC
  * Catalog</a>
+ * <P>An analyzer can be shared by several threads. The dictionaries and the caches are read without locking, the
+ * segmentation works in buffers of the current thread and the statistics are kept in striped counters. However, an analyzer
+ * that outputs its results should be used by a single thread, otherwise the outputs of the tokens would be interleaved.</P>
+ * <P>When the <CODE>aramorph.solutions.cache.file</CODE> system property gives a file, the solutions of the analyzed words
+ * are saved there when the JVM exits and read again on the next run, as long as the dictionaries have not changed.</P>
  * @author Pierrick Brihaye, 2003
  */
 public class AraMorph {
@@ -63,31 +74,75 @@ public class AraMorph {
 	 * TODO : use more generic interface.
 	 */	
 	protected static InMemorySolutionsHandler sol = null;
+	/** The system property giving how long, in milliseconds, an analyzer constructed while the dictionaries
+	 * are loaded in the background should wait for them. <CODE>0</CODE> means that it should fail at once ;
+	 * when the property is not set, it waits as long as necessary.
+	 */
+	public static final String INIT_TIMEOUT_PROPERTY = "aramorph.init.timeout";
+	/** The system property giving the number of slots of the memo of the stem/suffix joins. <CODE>0</CODE> disables it. */
+	public static final String JOIN_MEMO_PROPERTY = "aramorph.join.memo.size";
+	/** The background initialization, if any. */
+	private static FutureTask initialization = null;
 	/** Whether or not the analyzer should output some convenience messages */
 	protected boolean verbose = false;
 	/** The stream where to output the results */
 	PrintStream outputStream = null;
 	
-	//Stats
+	//Stats : shared by all the analyzers, so that an analyzer created for each token stream does not allocate its own striped counters
 	
 	/** Lines processed */
-	private int linesCounter = 0;
+	private static final StripedCounter linesCounter = new StripedCounter();
 	/** Arabic tokens processed */
-	private int arabicTokensCounter = 0;
+	private static final StripedCounter arabicTokensCounter = new StripedCounter();
 	/** Not arabic tokens processed */
-	private int notArabicTokensCounter = 0;
+	private static final StripedCounter notArabicTokensCounter = new StripedCounter();
 	
-	/** Arabic words which have been succesfully analyzed.
-	 * <PRE>key</PRE> = word
-	 * <PRE>value</PRE> = occurences
-	 */
-	private Hashtable found = new Hashtable();
+	/** The buffers where a thread segments words. */
+	private static class Workspace {
+		/** Where the segmentation stores the prefixes found in a word : their end and their index */
+		int[] prefixEnds = new int[32];
+		int[] prefixIndexes = new int[32];
+		/** Where the segmentation stores the stems found in a word : their end and their index */
+		int[] stemEnds = new int[32];
+		int[] stemIndexes = new int[32];
+		/** Where the segmentation stores the suffixes found in a word : their start and their index */
+		int[] suffixStarts = new int[32];
+		int[] suffixIndexes = new int[32];
+		/** The index of the suffix starting at each position of a word, if any, <CODE>-1</CODE> otherwise */
+		int[] suffixAt = new int[32];
+		/** The orthographic variation rules giving the alternative spellings of a word */
+		SpellingRules spellingRules = SpellingRules.getDefault();
+		/** Where the rules store the alternative spellings of a word */
+		ArrayList alternatives = new ArrayList();
+		
+		/** Grows the arrays used by the segmentations, if needed.
+		 * @param length The length of the word to be segmented
+		 */
+		void ensureSegmentationCapacity(int length) {
+			if (stemEnds.length <= length) {
+				prefixEnds = new int[length + 1];
+				prefixIndexes = new int[length + 1];
+				stemEnds = new int[length + 1];
+				stemIndexes = new int[length + 1];
+				suffixStarts = new int[length + 1];
+				suffixIndexes = new int[length + 1];
+				suffixAt = new int[length + 1];
+			}
+		}
+	}
 	
-	/** Arabic words which have not been succesfully analyzed.
-	 * <PRE>key</PRE> = word
-	 * <PRE>value</PRE> = occurences
-	 */
-	private Hashtable notFound = new Hashtable(); //key = word, value = occurences
+	/** The workspace of each thread. */
+	private static final ThreadLocal workspaces = new ThreadLocal() {
+		protected Object initialValue() {
+			return new Workspace();
+		}
+	};
+	
+	/** Arabic words which have been succesfully analyzed. */
+	private final WordTable found = new WordTable();
+	
+	/** Arabic words which have not been succesfully analyzed. */
+	private final WordTable notFound = new WordTable();
 	
 	/** Constructs an arabic morphological analyzer that will output nothing. */
 	public AraMorph() {
@@ -102,8 +157,82 @@ public class AraMorph {
 	public AraMorph(PrintStream outputStream, boolean verbose) {
 		this.outputStream = outputStream;
 		this.verbose = verbose;
-		dict = InMemoryDictionaryHandler.getHandler();
-		sol = InMemorySolutionsHandler.getHandler();
+		awaitInitialization();
+		initializeHandlers();
+	}
+	
+	/** Gets the handlers, once for all analyzers. */
+	private static synchronized void initializeHandlers() {
+		if (dict == null) dict = InMemoryDictionaryHandler.getHandler();
+		if (sol == null) sol = InMemorySolutionsHandler.getHandler();
+	}
+	
+	/** Starts loading the dictionaries in a background thread, so that an application can go on starting up
+	 * while they are loaded. Analyzers constructed before the end of the loading wait for it, as configured
+	 * by the <CODE>aramorph.init.timeout</CODE> system property. Calling this method again returns the same handle.
+	 * @return A handle on the initialization. Its <CODE>get</CODE> method returns <CODE>Boolean.TRUE</CODE> once the
+	 * dictionaries are ready or throws an <CODE>ExecutionException</CODE> if they could not be loaded
+	 */
+	public static synchronized Future initializeInBackground() {
+		if (initialization == null) {
+			initialization = new FutureTask(new Callable() {
+				public Object call() {
+					InMemoryDictionaryHandler.getHandler();
+					InMemorySolutionsHandler.getHandler();
+					return Boolean.TRUE;
+				}
+			});
+			Thread thread = new Thread(initialization, "AraMorph dictionaries loader");
+			//don't prevent the JVM from exiting
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return initialization;
+	}
+	
+	/** Returns whether or not the dictionaries are loaded and an analyzer can be constructed without waiting.
+	 * @return The initialization status
+	 */
+	public static boolean isInitialized() {
+		return InMemoryDictionaryHandler.isLoaded();
+	}
+	
+	/** Saves the solutions of the words analyzed so far to the file given by the <CODE>aramorph.solutions.cache.file</CODE>
+	 * system property, if any. It is done when the JVM exits, but a long running application may call it periodically.
+	 * @throws RuntimeException If a problem occurs when writing the file
+	 */
+	public static void saveSolutionsCache() throws RuntimeException {
+		//the words of the previous runs are kept
+		InMemorySolutionsHandler.getHandler();
+		InMemorySolutionsHandler.saveSolutionsFile();
+	}
+	
+	private static synchronized Future getInitialization() {
+		return initialization;
+	}
+	
+	/** Waits for the background initialization, if any.
+	 * @throws RuntimeException If the dictionaries could not be loaded or if they are not loaded in time
+	 */
+	private static void awaitInitialization() throws RuntimeException {
+		Future task = getInitialization();
+		if (task == null) return;
+		long timeout = Long.getLong(INIT_TIMEOUT_PROPERTY, -1).longValue();
+		try {
+			if (timeout < 0) task.get();
+			else if (timeout == 0 && !task.isDone()) throw new RuntimeException("The dictionaries are still being loaded");
+			else task.get(timeout, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e) {
+			throw new RuntimeException("The dictionaries are still being loaded after " + timeout + " ms");
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for the dictionaries");
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException("Can not load the dictionaries : " + e.getCause());
+		}
 	}
 	
 	/** Whether or not the analyzer should output some convenience messages
@@ -118,151 +247,16 @@ public class AraMorph {
 	 * @param word The word in arabic
 	 * @return The romanized word
 	 */
-	public static synchronized String romanizeWord(String word) {
-		String tmp_word = word;
-		tmp_word = tmp_word.replaceAll("\u0621", "'"); //\u0621 : ARABIC LETTER HAMZA
-		tmp_word = tmp_word.replaceAll("\u0622", "|"); //\u0622 : ARABIC LETTER ALEF WITH MADDA ABOVE
-		tmp_word = tmp_word.replaceAll("\u0623", ">"); //\u0623 : ARABIC LETTER ALEF WITH HAMZA ABOVE
-		tmp_word = tmp_word.replaceAll("\u0624", "&"); //\u0624 : ARABIC LETTER WAW WITH HAMZA ABOVE
-		tmp_word = tmp_word.replaceAll("\u0625", "<"); //\u0625 : ARABIC LETTER ALEF WITH HAMZA BELOW
-		tmp_word = tmp_word.replaceAll("\u0626", "}"); //\u0626 : ARABIC LETTER YEH WITH HAMZA ABOVE
-		tmp_word = tmp_word.replaceAll("\u0627", "A"); //\u0627 : ARABIC LETTER ALEF
-		tmp_word = tmp_word.replaceAll("\u0628", "b"); //\u0628 : ARABIC LETTER BEH
-		tmp_word = tmp_word.replaceAll("\u0629", "p"); //\u0629 : ARABIC LETTER TEH MARBUTA
-		tmp_word = tmp_word.replaceAll("\u062A", "t"); //\u062A : ARABIC LETTER TEH
-		tmp_word = tmp_word.replaceAll("\u062B", "v"); //\u062B : ARABIC LETTER THEH
-		tmp_word = tmp_word.replaceAll("\u062C", "j"); //\u062C : ARABIC LETTER JEEM
-		tmp_word = tmp_word.replaceAll("\u062D", "H"); //\u062D : ARABIC LETTER HAH
-		tmp_word = tmp_word.replaceAll("\u062E", "x"); //\u062E : ARABIC LETTER KHAH
-		tmp_word = tmp_word.replaceAll("\u062F", "d"); //\u062F : ARABIC LETTER DAL
-		tmp_word = tmp_word.replaceAll("\u0630", "*"); //\u0630 : ARABIC LETTER THAL
-		tmp_word = tmp_word.replaceAll("\u0631", "r"); //\u0631 : ARABIC LETTER REH
-		tmp_word = tmp_word.replaceAll("\u0632", "z"); //\u0632 : ARABIC LETTER ZAIN
-		tmp_word = tmp_word.replaceAll("\u0633", "s"); //\u0633 : ARABIC LETTER SEEN
-		tmp_word = tmp_word.replaceAll("\u0634", "\\$"); //\u0634 : ARABIC LETTER SHEEN
-		tmp_word = tmp_word.replaceAll("\u0635", "S"); //\u0635 : ARABIC LETTER SAD
-		tmp_word = tmp_word.replaceAll("\u0636", "D"); //\u0636 : ARABIC LETTER DAD
-		tmp_word = tmp_word.replaceAll("\u0637", "T"); //\u0637 : ARABIC LETTER TAH
-		tmp_word = tmp_word.replaceAll("\u0638", "Z"); //\u0638 : ARABIC LETTER ZAH
-		tmp_word = tmp_word.replaceAll("\u0639", "E"); //\u0639 : ARABIC LETTER AIN
-		tmp_word = tmp_word.replaceAll("\u063A", "g"); //\u063A : ARABIC LETTER GHAIN		
-		tmp_word = tmp_word.replaceAll("\u0640", "_"); //\u0640 : ARABIC TATWEEL
-		tmp_word = tmp_word.replaceAll("\u0641", "f"); //\u0641 : ARABIC LETTER FEH
-		tmp_word = tmp_word.replaceAll("\u0642", "q"); //\u0642 : ARABIC LETTER QAF
-		tmp_word = tmp_word.replaceAll("\u0643", "k"); //\u0643 : ARABIC LETTER KAF
-		tmp_word = tmp_word.replaceAll("\u0644", "l"); //\u0644 : ARABIC LETTER LAM
-		tmp_word = tmp_word.replaceAll("\u0645", "m"); //\u0645 : ARABIC LETTER MEEM
-		tmp_word = tmp_word.replaceAll("\u0646", "n"); //\u0646 : ARABIC LETTER NOON
-		tmp_word = tmp_word.replaceAll("\u0647", "h"); //\u0647 : ARABIC LETTER HEH
-		tmp_word = tmp_word.replaceAll("\u0648", "w"); //\u0648 : ARABIC LETTER WAW
-		tmp_word = tmp_word.replaceAll("\u0649", "Y"); //\u0649 : ARABIC LETTER ALEF MAKSURA
-		tmp_word = tmp_word.replaceAll("\u064A", "y"); //\u064A : ARABIC LETTER YEH
-		tmp_word = tmp_word.replaceAll("\u064B", "F"); //\u064B : ARABIC FATHATAN
-		tmp_word = tmp_word.replaceAll("\u064C", "N"); //\u064C : ARABIC DAMMATAN
-		tmp_word = tmp_word.replaceAll("\u064D", "K"); //\u064D : ARABIC KASRATAN
-		tmp_word = tmp_word.replaceAll("\u064E", "a"); //\u064E : ARABIC FATHA
-		tmp_word = tmp_word.replaceAll("\u064F", "u"); //\u064F : ARABIC DAMMA
-		tmp_word = tmp_word.replaceAll("\u0650", "i"); //\u0650 : ARABIC KASRA
-		tmp_word = tmp_word.replaceAll("\u0651", "~"); //\u0651 : ARABIC SHADDA
-		tmp_word = tmp_word.replaceAll("\u0652", "o"); //\u0652 : ARABIC SUKUN		
-		tmp_word = tmp_word.replaceAll("\u0670", "`"); //\u0670 : ARABIC LETTER SUPERSCRIPT ALEF
-		tmp_word = tmp_word.replaceAll("\u0671", "{"); //\u0671 : ARABIC LETTER ALEF WASLA
-		tmp_word = tmp_word.replaceAll("\u067E", "P"); //\u067E : ARABIC LETTER PEH
-		tmp_word = tmp_word.replaceAll("\u0686", "J"); //\u0686 : ARABIC LETTER TCHEH
-		tmp_word = tmp_word.replaceAll("\u06A4", "V"); //\u06A4 : ARABIC LETTER VEH
-		tmp_word = tmp_word.replaceAll("\u06AF", "G"); //\u06AF : ARABIC LETTER GAF
-		tmp_word = tmp_word.replaceAll("\u0698", "R"); //\u0698 : ARABIC LETTER JEH (no more in Buckwalter system)
-		//Not in Buckwalter system \u0679 : ARABIC LETTER TTEH
-		//Not in Buckwalter system \u0688 : ARABIC LETTER DDAL
-		//Not in Buckwalter system \u06A9 : ARABIC LETTER KEHEH
-		//Not in Buckwalter system \u0691 : ARABIC LETTER RREH
-		//Not in Buckwalter system \u06BA : ARABIC LETTER NOON GHUNNA
-		//Not in Buckwalter system \u06BE : ARABIC LETTER HEH DOACHASHMEE
-		//Not in Buckwalter system \u06C1 : ARABIC LETTER HEH GOAL
-		//Not in Buckwalter system \u06D2 : ARABIC LETTER YEH BARREE
-		tmp_word = tmp_word.replaceAll("\u060C", ","); //\u060C : ARABIC COMMA
-		tmp_word = tmp_word.replaceAll("\u061B", ";"); //\u061B : ARABIC SEMICOLON
-		tmp_word = tmp_word.replaceAll("\u061F", "?"); //\u061F : ARABIC QUESTION MARK
-		//Not significant for morphological analysis
-		tmp_word = tmp_word.replaceAll("\u0640", ""); //\u0640 : ARABIC TATWEEL
-		//Not suitable for morphological analysis : remove all vowels/diacritics, i.e. undo the job !
-		tmp_word = tmp_word.replaceAll("[FNKaui~o]", "");
-		//TODO : how to handle ARABIC LETTER SUPERSCRIPT ALEF and ARABIC LETTER ALEF WASLA ?		
-		tmp_word = tmp_word.replaceAll("[`\\{]", ""); //strip them for now
-		return tmp_word;
+	public static String romanizeWord(String word) {
+		return Transliterator.romanize(word);
 	}
 	
 	/** Return an word in arabic from a word in the Buckwalter transliteration system.
 	 * @param translitered The romanized word
 	 * @return The word in arabic
 	 */
-	public static synchronized String arabizeWord(String translitered) {
-		String tmp_word = translitered;
-		// convert to transliteration
-		tmp_word = tmp_word.replaceAll("'", "\u0621"); //\u0621 : ARABIC LETTER HAMZA
-		tmp_word = tmp_word.replaceAll("\\|", "\u0622"); //\u0622 : ARABIC LETTER ALEF WITH MADDA ABOVE
-		tmp_word = tmp_word.replaceAll(">", "\u0623"); //\u0623 : ARABIC LETTER ALEF WITH HAMZA ABOVE
-		tmp_word = tmp_word.replaceAll("&", "\u0624"); //\u0624 : ARABIC LETTER WAW WITH HAMZA ABOVE
-		tmp_word = tmp_word.replaceAll("<", "\u0625"); //\u0625 : ARABIC LETTER ALEF WITH HAMZA BELOW
-		tmp_word = tmp_word.replaceAll("}", "\u0626"); //\u0626 : ARABIC LETTER YEH WITH HAMZA ABOVE
-		tmp_word = tmp_word.replaceAll("A", "\u0627"); //\u0627 : ARABIC LETTER ALEF
-		tmp_word = tmp_word.replaceAll("b", "\u0628"); //\u0628 : ARABIC LETTER BEH
-		tmp_word = tmp_word.replaceAll("p", "\u0629"); //\u0629 : ARABIC LETTER TEH MARBUTA
-		tmp_word = tmp_word.replaceAll("t", "\u062A"); //\u062A : ARABIC LETTER TEH
-		tmp_word = tmp_word.replaceAll("v", "\u062B"); //\u062B : ARABIC LETTER THEH
-		tmp_word = tmp_word.replaceAll("j", "\u062C"); //\u062C : ARABIC LETTER JEEM
-		tmp_word = tmp_word.replaceAll("H", "\u062D"); //\u062D : ARABIC LETTER HAH
-		tmp_word = tmp_word.replaceAll("x", "\u062E"); //\u062E : ARABIC LETTER KHAH
-		tmp_word = tmp_word.replaceAll("d", "\u062F"); //\u062F : ARABIC LETTER DAL
-		tmp_word = tmp_word.replaceAll("\\*", "\u0630"); //\u0630 : ARABIC LETTER THAL
-		tmp_word = tmp_word.replaceAll("r", "\u0631"); //\u0631 : ARABIC LETTER REH
-		tmp_word = tmp_word.replaceAll("z", "\u0632"); //\u0632 : ARABIC LETTER ZAIN
-		tmp_word = tmp_word.replaceAll("s", "\u0633" ); //\u0633 : ARABIC LETTER SEEN
-		tmp_word = tmp_word.replaceAll("\\$", "\u0634"); //\u0634 : ARABIC LETTER SHEEN
-		tmp_word = tmp_word.replaceAll("S", "\u0635"); //\u0635 : ARABIC LETTER SAD
-		tmp_word = tmp_word.replaceAll("D", "\u0636"); //\u0636 : ARABIC LETTER DAD
-		tmp_word = tmp_word.replaceAll("T", "\u0637"); //\u0637 : ARABIC LETTER TAH
-		tmp_word = tmp_word.replaceAll("Z", "\u0638"); //\u0638 : ARABIC LETTER ZAH
-		tmp_word = tmp_word.replaceAll("E", "\u0639"); //\u0639 : ARABIC LETTER AIN
-		tmp_word = tmp_word.replaceAll("g", "\u063A"); //\u063A : ARABIC LETTER GHAIN
-		tmp_word = tmp_word.replaceAll("_", "\u0640"); //\u0640 : ARABIC TATWEEL
-		tmp_word = tmp_word.replaceAll("f", "\u0641"); //\u0641 : ARABIC LETTER FEH
-		tmp_word = tmp_word.replaceAll("q", "\u0642"); //\u0642 : ARABIC LETTER QAF
-		tmp_word = tmp_word.replaceAll("k", "\u0643"); //\u0643 : ARABIC LETTER KAF
-		tmp_word = tmp_word.replaceAll("l", "\u0644"); //\u0644 : ARABIC LETTER LAM
-		tmp_word = tmp_word.replaceAll("m", "\u0645"); //\u0645 : ARABIC LETTER MEEM
-		tmp_word = tmp_word.replaceAll("n", "\u0646"); //\u0646 : ARABIC LETTER NOON
-		tmp_word = tmp_word.replaceAll("h", "\u0647"); //\u0647 : ARABIC LETTER HEH
-		tmp_word = tmp_word.replaceAll("w", "\u0648"); //\u0648 : ARABIC LETTER WAW
-		tmp_word = tmp_word.replaceAll("Y", "\u0649"); //\u0649 : ARABIC LETTER ALEF MAKSURA
-		tmp_word = tmp_word.replaceAll("y", "\u064A"); //\u064A : ARABIC LETTER YEH
-		tmp_word = tmp_word.replaceAll("F", "\u064B"); //\u064B : ARABIC FATHATAN
-		tmp_word = tmp_word.replaceAll("N", "\u064C"); //\u064C : ARABIC DAMMATAN
-		tmp_word = tmp_word.replaceAll("K", "\u064D"); //\u064D : ARABIC KASRATAN
-		tmp_word = tmp_word.replaceAll("a", "\u064E"); //\u064E : ARABIC FATHA
-		tmp_word = tmp_word.replaceAll("u", "\u064F"); //\u064F : ARABIC DAMMA
-		tmp_word = tmp_word.replaceAll("i", "\u0650"); //\u0650 : ARABIC KASRA
-		tmp_word = tmp_word.replaceAll("~", "\u0651"); //\u0651 : ARABIC SHADDA
-		tmp_word = tmp_word.replaceAll("o", "\u0652"); //\u0652 : ARABIC SUKUN
-		tmp_word = tmp_word.replaceAll("`", "\u0670"); //\u0670 : ARABIC LETTER SUPERSCRIPT ALEF
-		tmp_word = tmp_word.replaceAll("\\{", "\u0671"); //\u0671 : ARABIC LETTER ALEF WASLA
-		tmp_word = tmp_word.replaceAll("P", "\u067E"); //\u067E : ARABIC LETTER PEH
-		tmp_word = tmp_word.replaceAll("J", "\u0686"); //\u0686 : ARABIC LETTER TCHEH
-		tmp_word = tmp_word.replaceAll("V", "\u06A4"); //\u06A4 : ARABIC LETTER VEH
-		tmp_word = tmp_word.replaceAll("G", "\u06AF"); //\u06AF : ARABIC LETTER GAF
-		tmp_word = tmp_word.replaceAll("R", "\u0698"); //\u0698 : ARABIC LETTER JEH (no more in Buckwalter system)
-		//Not in Buckwalter system \u0679 : ARABIC LETTER TTEH
-		//Not in Buckwalter system \u0688 : ARABIC LETTER DDAL
-		//Not in Buckwalter system \u06A9 : ARABIC LETTER KEHEH
-		//Not in Buckwalter system \u0691 : ARABIC LETTER RREH
-		//Not in Buckwalter system \u06BA : ARABIC LETTER NOON GHUNNA
-		//Not in Buckwalter system \u06BE : ARABIC LETTER HEH DOACHASHMEE
-		//Not in Buckwalter system \u06C1 : ARABIC LETTER HEH GOAL
-		//Not in Buckwalter system \u06D2 : ARABIC LETTER YEH BARREE
-		tmp_word = tmp_word.replaceAll(",", "\u060C" ); //\u060C : ARABIC COMMA
-		tmp_word = tmp_word.replaceAll(";", "\u061B"); //\u061B : ARABIC SEMICOLON
-		tmp_word = tmp_word.replaceAll("\\?", "\u061F"); //\u061F : ARABIC QUESTION MARK
-		return tmp_word;
+	public static String arabizeWord(String translitered) {
+		return Transliterator.arabize(translitered);
 	}
 	
 	/** Analyze the content of a stream
@@ -272,7 +266,7 @@ public class AraMorph {
 		try {
 			String line = null;
 			while ((line = IN.readLine()) != null) {
-				linesCounter++;
+				linesCounter.increment();
 				if (verbose) System.out.println("Processing line : " + IN.getLineNumber());
 				List tokens = tokenize(line);
 				Iterator it_tokens = tokens.iterator();
@@ -287,6 +281,25 @@ public class AraMorph {
 		}
 	}
 	
+	/** Analyze the content of a stream read by a {@link SingleByteTokenizer tokenizer}
+	 * @param tokenizer The tokenizer of the stream to be analyzed
+	 */
+	private void analyze(SingleByteTokenizer tokenizer, boolean outputBuckwalter) {
+		try {
+			int type;
+			while ((type = tokenizer.next()) != SingleByteTokenizer.END) {
+				if (type == SingleByteTokenizer.LINE) {
+					linesCounter.increment();
+					if (verbose) System.out.println("Processing line : " + tokenizer.getLineNumber());
+				}
+				else analyzeToken(tokenizer.getToken(), tokenizer.getTranslitered(), outputBuckwalter);
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Can not read line " + tokenizer.getLineNumber());
+		}
+	}
+	
 	/** Tokenizes a <CODE>String</CODE> using arabic boundaries.
 	 * @return A list of tokens
 	 * @param str The <CODE>String</CODE>
@@ -325,6 +338,16 @@ public class AraMorph {
 	 * @param token The token to be analyzed
 	 */
 	public boolean analyzeToken(String token, boolean outputBuckwalter) {
+		return analyzeToken(token, null, outputBuckwalter);
+	}
+	
+	/** Analyzes a token.
+	 * @return Whether or not the word has a solution in arabic
+	 * @param token The token to be analyzed
+	 * @param translitered The transliteration of the token if it is already known to be made of arabic letters, <CODE>null</CODE> otherwise
+	 * @param outputBuckwalter Whether or not the Buckwalter transliteration system should be used
+	 */
+	private boolean analyzeToken(String token, String translitered, boolean outputBuckwalter) {
 		if (outputStream != null) outputStream.println("Processing token : " + "\t" + token);
 		//TODO : check accuracy
 		//ignored \u0688 : ARABIC LETTER DDAL
@@ -335,13 +358,13 @@ public class AraMorph {
 		//ignored \u06C1 : ARABIC LETTER HEH GOAL
 		//ignored \u0640 : ARABIC TATWEEL
 		//ignored \u06D2 : ARABIC LETTER YEH BARREE
-		if (!token.matches("([\u067E\u0686\u0698\u06AF\u0621-\u063A\u0641-\u0652])+")) {
+		if (translitered == null && !token.matches("([\u067E\u0686\u0698\u06AF\u0621-\u063A\u0641-\u0652])+")) {
 			token = token.trim();
 			// tokenize it on white space
 			String subTokens[] = token.split("\\s+");
 			for (int i = 0 ; i < subTokens.length ; i++) {
 				if (!"".equals(subTokens[i].trim())) {
-					notArabicTokensCounter++;
+					notArabicTokensCounter.increment();
 					if (outputStream != null) outputStream.println("Non-Arabic : " + subTokens[i]);
 				}
 			}
@@ -349,27 +372,17 @@ public class AraMorph {
 		}
 		else {
 			boolean hasSolutions = false;
-			arabicTokensCounter++;
-			String translitered = romanizeWord(token);
+			arabicTokensCounter.increment();
+			if (translitered == null) translitered = romanizeWord(token);
 			if (outputStream != null) outputStream.println("Transliteration : " + "\t" + translitered);
 			//Already processed : previously found
 			if (found.containsKey(translitered)) {
 				if (outputStream != null && verbose) outputStream.println("Token already processed.");
-				if (!found.containsKey(translitered))
-					throw new RuntimeException("There is no key for " + translitered + " in found");
-				//increase reference counter
-				Integer foundCounter = (Integer)found.get(translitered);
-				found.put(translitered, new Integer(foundCounter.intValue() + 1));
 				hasSolutions = true;
 			}
 			//Already processed : previously not found
 			else if (notFound.containsKey(translitered)) {
 				if (outputStream != null && verbose) outputStream.println("Token already processed without solution.");
-				if (!notFound.containsKey(translitered))
-					throw new RuntimeException("There is no key for " + translitered + " in notFound");
-				//increase reference counter
-				Integer notFoundCounter = (Integer)notFound.get(translitered);
-				notFound.put(translitered, new Integer(notFoundCounter.intValue() + 1));
 				hasSolutions = false;
 			}
 			//Not yet processed
@@ -377,56 +390,71 @@ public class AraMorph {
 				
 				if (outputStream != null && verbose) outputStream.println("Token not yet processed.");
 				
-				//word has solutions...
-				if (feedWordSolutions(translitered)) {
-					//mark word as found
+				//another analyzer found that the word has no solution
+				if (sol.hasNoSolution(translitered)) {
+					//consistency check
 					if (found.containsKey(translitered))
 						throw new RuntimeException("There is already a key for " + translitered + " in found");
+					if (outputStream != null && verbose) outputStream.println("Token is already known to have no solution.");
+					//mark word as not found
+					notFound.add(translitered);
+					hasSolutions = false;
+				}
+				//word has solutions...
+				else if (feedWordSolutions(translitered) != null) {
+					//mark word as found : another thread may have done it in the meantime, but it can not have marked it as not found
+					if (notFound.containsKey(translitered))
+						throw new RuntimeException("There is already a key for " + translitered + " in notFound");
 					if (outputStream != null && verbose) outputStream.println("Token has direct solutions.");
-					//set reference counter to 1
-					found.put(translitered,  new Integer(1));
+					found.add(translitered);
 					hasSolutions = true;
 				}
 				//word has no direct solution
 				else {
 					//if there are some alternative spellings
-					if (feedAlternativeSpellings(translitered)) {
+					Collection wordAlternativeSpellings = feedAlternativeSpellings(translitered);
+					if (wordAlternativeSpellings != null) {
 						
 						boolean alternativesGiveSolutions = false;
-						Iterator it_alternatives = sol.getAlternativeSpellingsIterator(translitered);
+						Iterator it_alternatives = null;
+						//a single probe of the normalized dictionaries may spare the segmentation of every alternative
+						if (mayHaveAlternativeSolutions(translitered)) it_alternatives = wordAlternativeSpellings.iterator();
+						else if (outputStream != null && verbose) outputStream.println("Token's normalized form has no segmentation.");
 						while (it_alternatives != null && it_alternatives.hasNext()) {
 							String alternative = (String)it_alternatives.next();
-							//feed solutions with alternative spellings' ones
-							alternativesGiveSolutions = (alternativesGiveSolutions || feedWordSolutions(alternative));
+							//feed solutions with every alternative spelling's ones
+							alternativesGiveSolutions = (feedWordSolutions(alternative) != null || alternativesGiveSolutions);
 						}
 						
 						if (alternativesGiveSolutions) {
 							//consistency check
-							if (found.containsKey(translitered))
-								throw new RuntimeException("There is already a key for " + translitered + " in found");
+							if (notFound.containsKey(translitered))
+								throw new RuntimeException("There is already a key for " + translitered + " in notFound");
 							if (outputStream != null && verbose) outputStream.println("Token's alternative spellings have solutions.");
-							//mark word as found set reference counter to 1
-							found.put(translitered,  new Integer(1));
+							//mark word as found
+							found.add(translitered);
 							hasSolutions = true;
 						}
 						else {
 							//consistency check
-							if (notFound.containsKey(translitered))
-								throw new RuntimeException("There is already a key for " + translitered + " in notFound");
+							if (found.containsKey(translitered))
+								throw new RuntimeException("There is already a key for " + translitered + " in found");
 							if (outputStream != null && verbose) outputStream.println("Token's alternative spellings have no solution.");
-							//mark word as not found and set reference counter to 1
-							notFound.put(translitered, new Integer(1));
+							//mark word as not found, for every analyzer
+							notFound.add(translitered);
+							sol.addNoSolution(translitered);
 							hasSolutions = false;
 						}
 					}
 					//there are no alternative
 					else {
 						//consistency check
-						if (notFound.containsKey(translitered))
-							throw new RuntimeException("There is already a key for " + translitered + " in notFound");
+						if (found.containsKey(translitered))
+							throw new RuntimeException("There is already a key for " + translitered + " in found");
 						if (outputStream != null && verbose) outputStream.println("Token has no solution and no alternative spellings.");
-						//mark word as not found and set reference counter to 1
-						notFound.put(translitered, new Integer(1));
+						//mark word as not found, for every analyzer
+						notFound.add(translitered);
+						sol.addNoSolution(translitered);
 						hasSolutions = false;
 					}
 				}
@@ -434,10 +462,11 @@ public class AraMorph {
 			
 			//output solutions : TODO consider XML output
 			if (outputStream != null) {
-				if (found.containsKey(translitered)) {
-					if (sol.hasSolutions(translitered)) {
-						Iterator it_solutions = sol.getSolutionsIterator(translitered);
-						while (it_solutions != null && it_solutions.hasNext()) {
+				if (hasSolutions) {
+					Collection wordSolutions = getFoundSolutions(translitered);
+					if (wordSolutions != null) {
+						Iterator it_solutions = wordSolutions.iterator();
+						while (it_solutions.hasNext()) {
 							Solution solution = (Solution)it_solutions.next();
 							if (outputBuckwalter) 
 								outputStream.println(solution.toString());
@@ -445,16 +474,16 @@ public class AraMorph {
 								outputStream.println(solution.toArabizedString());
 						}
 					}
-					if (sol.hasAlternativeSpellings(translitered)) {
+					else {
 						if (outputStream != null && verbose) outputStream.println("No direct solution");
-						Iterator it_alternatives = sol.getAlternativeSpellingsIterator(translitered);
-						while (it_alternatives != null && it_alternatives.hasNext()) {
+						Iterator it_alternatives = getFoundAlternativeSpellings(translitered).iterator();
+						while (it_alternatives.hasNext()) {
 							String alternative = (String)it_alternatives.next();
 							if (outputStream != null && verbose) outputStream.println("Considering alternative spelling :" + "\t" + alternative);
-							//if (sol.hasSolutions(alternative) && !(sol.getSolutions(alternative).isEmpty()) {
-							if (sol.hasSolutions(alternative)) {
-								Iterator it_solutions = sol.getSolutionsIterator(alternative);
-								while (it_solutions != null && it_solutions.hasNext()) {
+							Collection alternativeSolutions = feedWordSolutions(alternative);
+							if (alternativeSolutions != null) {
+								Iterator it_solutions = alternativeSolutions.iterator();
+								while (it_solutions.hasNext()) {
 									Solution solution = (Solution)it_solutions.next();
 									if (outputBuckwalter) 
 										outputStream.println(solution.toString());
@@ -465,83 +494,102 @@ public class AraMorph {
 						}
 					}
 				}
-				else if (notFound.containsKey(translitered)) {
+				else {
 					outputStream.println("\nNo solution\n");
 				}
-				else throw new RuntimeException(translitered + " is neither in found or notFound !");
 			}
 			
 			return hasSolutions;
 		}
 	}
 	
-	/** Splits a word in prefix + stem + suffix combinations.
-	 * @return The list of combinations
-	 * @param translitered The word. It is assumed that {@link #romanizeWord(String word) romanizeWord} has been called before
-	 */
-	private HashSet segmentWord(String translitered) {
-		HashSet segmented = new HashSet();
-		int prefix_len = 0;
-		int suffix_len = 0;
-		//TODO : why 4 ? The info could certainly be grabbed from dictionnaries...
-		while ((prefix_len) <= 4 && (prefix_len <= translitered.length())) {
-			String prefix = translitered.substring(0, prefix_len);
-			int stem_len = (translitered.length() - prefix_len);
-			suffix_len = 0;
-			//TODO : why 6 ?  The info could certainly be grabbed from dictionnaries...
-			while ((stem_len >= 1) && (suffix_len <= 6)) {
-				String stem = translitered.substring(prefix_len, prefix_len + stem_len);
-				String suffix = translitered.substring(prefix_len + stem_len, prefix_len + stem_len + suffix_len);
-				segmented.add(new SegmentedWord(prefix, stem, suffix));
-				stem_len--;
-				suffix_len++;
-			}
-			prefix_len++;
-		}
-		return segmented;
-	}
-	
 	/** Feed an internal list of solutions for the given word
 	 * @param translitered The word. It is assumed that {@link #romanizeWord(String word) romanizeWord} has been called before
-	 * @return Whether or not there are solutions for this word
+	 * @return The solutions for this word or <CODE>null</CODE> if there are none
 	 */
-	private boolean feedWordSolutions(String translitered) {
+	private Collection feedWordSolutions(String translitered) {
 		//No need to reprocess
-		if (sol.hasSolutions(translitered)) return true;
-		HashSet wordSolutions = new HashSet();
+		Collection cachedSolutions = sol.getSolutions(translitered);
+		if (cachedSolutions != null) return cachedSolutions;
+		//A previous run may have analyzed the word
+		SolutionsFile solutionsFile = sol.getSolutionsFile();
+		if (solutionsFile != null) {
+			int position = solutionsFile.find(translitered);
+			if (position != -1) {
+				HashSet savedSolutions = solutionsFile.readSolutions(position, dict, verbose);
+				if (savedSolutions != null) sol.addSolutions(translitered, savedSolutions);
+				return savedSolutions;
+			}
+		}
+		//Segmentations are (prefix end, stem end) pairs over the word : nothing is allocated until a solution is found
+		HashSet wordSolutions = null;
 		int cnt = 0;
-		//get a list of valid segmentations
-		HashSet segments = segmentWord(translitered);
-		//Brute force algorithm
-		Iterator it_seg = segments.iterator();
-		while (it_seg != null && it_seg.hasNext()) {
-			SegmentedWord segmentedWord = (SegmentedWord)it_seg.next();
-			//Is prefix known ?
-			if (dict.hasPrefix(segmentedWord.getPrefix())) {
-				//Is stem known ?
-				if (dict.hasStem(segmentedWord.getStem())) {
-					//Is suffix known ?
-					if (dict.hasSuffix(segmentedWord.getSuffix())) {
-						//Compatibility check
-						Iterator it_prefix = dict.getPrefixIterator(segmentedWord.getPrefix());
-						while (it_prefix != null && it_prefix.hasNext()) {
-							DictionaryEntry prefix = (DictionaryEntry)it_prefix.next();
-							Iterator it_stem = dict.getStemIterator(segmentedWord.getStem());
-							while (it_stem != null && it_stem.hasNext()) {
-								DictionaryEntry stem = (DictionaryEntry)it_stem.next();
-								//Prefix/Stem compatibility
-								if (dict.hasAB(prefix.getMorphology(), stem.getMorphology())) {
-									Iterator it_suffix = dict.getSuffixIterator(segmentedWord.getSuffix());
-									while (it_suffix != null && it_suffix.hasNext()) {
-										DictionaryEntry suffix = (DictionaryEntry)it_suffix.next();
-										//Prefix/Suffix compatiblity
-										if (dict.hasAC(prefix.getMorphology(), suffix.getMorphology())) {
-											//Stem/Suffix compatibility
-											if (dict.hasBC(stem.getMorphology(), suffix.getMorphology())) {
-												//All tests passed : it is a solution
-												wordSolutions.add(new Solution(verbose, ++cnt, prefix, stem, suffix));
-											}
-										}
+		int length = translitered.length();
+		SegmentationBounds bounds = dict.getSegmentationBounds();
+		AffixFrames frames = dict.getAffixFrames();
+		//Too short or too long for any prefix + stem + suffix
+		if (!bounds.hasSegmentation(length)) return null;
+		Workspace workspace = (Workspace)workspaces.get();
+		workspace.ensureSegmentationCapacity(length);
+		int[] prefixEnds = workspace.prefixEnds;
+		int[] prefixIndexes = workspace.prefixIndexes;
+		int[] stemEnds = workspace.stemEnds;
+		int[] stemIndexes = workspace.stemIndexes;
+		int[] suffixStarts = workspace.suffixStarts;
+		int[] suffixIndexes = workspace.suffixIndexes;
+		int[] suffixAt = workspace.suffixAt;
+		//Which suffixes are known ? A single walk from the end of the word gives them all
+		int suffixes = dict.findSuffixes(translitered, suffixStarts, suffixIndexes);
+		if (suffixes == 0) return null;
+		Arrays.fill(suffixAt, 0, length + 1, -1);
+		for (int s = 0 ; s < suffixes ; s++) suffixAt[suffixStarts[s]] = suffixIndexes[s];
+		//Which prefixes are known ? A single walk gives them all, by ascending length
+		int prefixes = dict.findPrefixes(translitered, prefixEnds, prefixIndexes);
+		for (int p = 0 ; p < prefixes ; p++) {
+			int prefix_len = prefixEnds[p];
+			//No room left for a stem
+			if (length - prefix_len < bounds.getMinStemLength()) break;
+			//Is there a suffix at the distance of a stem length ?
+			boolean hasCandidates = false;
+			for (int s = 0 ; s < suffixes && !hasCandidates ; s++) hasCandidates = bounds.hasStemLength(suffixStarts[s] - prefix_len);
+			if (!hasCandidates) continue;
+			int prefix = prefixIndexes[p];
+			//Which stems are known ? A single walk gives them all, by ascending length
+			int stems = dict.findStems(translitered, prefix_len, stemEnds, stemIndexes);
+			for (int s = 0 ; s < stems ; s++) {
+				//Is there a suffix right after the stem ?
+				int suffix = suffixAt[stemEnds[s]];
+				if (suffix == -1) continue;
+				//Prefix/Suffix compatibility has been checked once for all : entries of the same category are accepted or rejected together
+				int firstPair = frames.getFirstPair(prefix, suffix);
+				int pairLimit = frames.getPairLimit(prefix, suffix);
+				if (firstPair == pairLimit) continue;
+				EntryGroups prefixGroups = dict.getPrefixGroups(prefix);
+				EntryGroups stemGroups = dict.getStemGroups(stemIndexes[s]);
+				EntryGroups suffixGroups = dict.getSuffixGroups(suffix);
+				//Stem/Suffix compatibility does not depend on the prefix : words sharing this stem and suffix share it
+				int[][] compatibleStemGroups = dict.joinStemAndSuffix(stemIndexes[s], suffix, stemGroups, suffixGroups);
+				for (int pair = firstPair ; pair < pairLimit ; pair++) {
+					int[] stemGroupsOfPair = compatibleStemGroups[frames.getSuffixGroup(pair)];
+					for (int g = 0 ; g < stemGroupsOfPair.length ; g++) {
+						int b = stemGroupsOfPair[g];
+						//Prefix/Stem and Stem/Suffix compatibility
+						if (frames.acceptsStem(pair, stemGroups.getCategory(b))) {
+							//All tests passed : every combination of these groups is a solution
+							int prefixGroup = frames.getPrefixGroup(pair);
+							int suffixGroup = frames.getSuffixGroup(pair);
+							DictionaryEntry[] prefixEntries = prefixGroups.getEntries(prefixGroup);
+							DictionaryEntry[] stemEntries = stemGroups.getEntries(b);
+							DictionaryEntry[] suffixEntries = suffixGroups.getEntries(suffixGroup);
+							if (wordSolutions == null) wordSolutions = new HashSet();
+							for (int i = 0 ; i < prefixEntries.length ; i++) {
+								for (int j = 0 ; j < stemEntries.length ; j++) {
+									for (int k = 0 ; k < suffixEntries.length ; k++) {
+										Solution solution = new Solution(verbose, ++cnt, prefixEntries[i], stemEntries[j], suffixEntries[k]);
+										//so that the solution can be saved
+										solution.setReferences(SolutionsFile.reference(prefix, prefixGroup, i),
+											SolutionsFile.reference(stemIndexes[s], b, j), SolutionsFile.reference(suffix, suffixGroup, k));
+										wordSolutions.add(solution);
 									}
 								}
 							}
@@ -551,195 +599,86 @@ public class AraMorph {
 			}
 		}
 		//Add all solutions, if any
-		if (!wordSolutions.isEmpty()) sol.addSolutions(translitered, wordSolutions);
-		return (!wordSolutions.isEmpty());
+		if (wordSolutions == null) return null;
+		sol.addSolutions(translitered, wordSolutions);
+		return wordSolutions;
+	}
+	
+	/** Whether or not some alternative spelling of the given word may have solutions. Since they all have the same
+	 * {@link SpellingNormalizer normalized} form, a single walk over it rules them all out when it can not be segmented
+	 * into normalized prefixes, stems and suffixes, whatever their compatibility.
+	 * @param translitered The word
+	 * @return Whether or not the alternative spellings are worth being segmented
+	 */
+	private boolean mayHaveAlternativeSolutions(String translitered) {
+		String normalized = SpellingNormalizer.normalize(translitered);
+		int length = normalized.length();
+		Workspace workspace = (Workspace)workspaces.get();
+		workspace.ensureSegmentationCapacity(length);
+		int[] prefixEnds = workspace.prefixEnds;
+		int[] prefixIndexes = workspace.prefixIndexes;
+		int[] stemEnds = workspace.stemEnds;
+		int[] stemIndexes = workspace.stemIndexes;
+		int[] suffixStarts = workspace.suffixStarts;
+		int[] suffixIndexes = workspace.suffixIndexes;
+		int[] suffixAt = workspace.suffixAt;
+		int suffixes = dict.findNormalizedSuffixes(normalized, suffixStarts, suffixIndexes);
+		if (suffixes == 0) return false;
+		Arrays.fill(suffixAt, 0, length + 1, -1);
+		for (int s = 0 ; s < suffixes ; s++) suffixAt[suffixStarts[s]] = suffixIndexes[s];
+		int prefixes = dict.findNormalizedPrefixes(normalized, prefixEnds, prefixIndexes);
+		for (int p = 0 ; p < prefixes ; p++) {
+			int stems = dict.findNormalizedStems(normalized, prefixEnds[p], stemEnds, stemIndexes);
+			for (int s = 0 ; s < stems ; s++) {
+				if (suffixAt[stemEnds[s]] != -1) return true;
+			}
+		}
+		return false;
 	}
 	
 	/** Feed an internal list of alternative spellings for the given word
 	 * @param translitered The word. It is assumed that {@link #romanizeWord(String word) romanizeWord} has been called before
-	 * @return Whether or not there are alternative spellings for this word
+	 * @return The alternative spellings for this word or <CODE>null</CODE> if there are none
 	 */
-	private boolean feedAlternativeSpellings(String translitered) {
+	private Collection feedAlternativeSpellings(String translitered) {
 		//No need to reprocess
-		if (sol.hasAlternativeSpellings(translitered)) return true;
+		Collection cachedAlternativeSpellings = sol.getAlternativeSpellings(translitered);
+		if (cachedAlternativeSpellings != null) return cachedAlternativeSpellings;
+		Workspace workspace = (Workspace)workspaces.get();
+		ArrayList alternatives = workspace.alternatives;
+		alternatives.clear();
+		if (workspace.spellingRules.getAlternativeSpellings(translitered, alternatives) == 0) return null;
 		HashSet wordAlternativeSpellings = new HashSet();
-		String temp = translitered;
-		String temp2;
-		//final 'alif maqSuura + hamza-on-the-line
-		if (temp.matches(".*" + "Y'$")) { // Y_w'_Y'
-			//-> yaa' + hamza-on-the-line
-			temp = temp.replaceAll("Y", "y"); // y_w'_y'
-			if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-			wordAlternativeSpellings.add(temp); // y_w'_y'  -- pushed
-			//medial waaw + hamza-on-the-line -> hamza-on-waaw
-			temp2 = temp.replaceFirst("w'", "&"); //y_&__y'
-			if (!temp.equals(temp2)) {
-				temp = temp2; //y_&__y'
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); //y_&__y'  -- pushed
-			}
-			temp = translitered; // Y_w'_Y'
-			//-> yaa' + hamza-on-the-line
-			temp = temp.replaceAll("Y","y"); // y_w'_y'
-			//final yaa' + hamza-on-the-line -> hamza-on-yaa'
-			temp = temp.replaceFirst("y'$","}"); // y_w'_}
-			if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-			wordAlternativeSpellings.add(temp); // y_w'_}   -- pushed
-			//medial waaw + hamza-on-the-line -> hamza-on-waaw
-			temp2 = temp.replaceFirst("w'", "&"); //  y_&__}
-			if (!temp.equals(temp2)) {
-				temp = temp2; //  y_&__}
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); //y_&__}   -- pushed
-			}
+		for (int i = 0 ; i < alternatives.size() ; i++) {
+			String alternative = (String)alternatives.get(i);
+			if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ alternative + " for word " + translitered);
+			wordAlternativeSpellings.add(alternative);
 		}
-		//final yaa' + hamza-on-the-line
-		else if (temp.matches(".*" + "y'$")) { //Y_w'_y'
-			//'alif maqSuura -> yaa'
-			temp2 = temp.replaceAll("Y", "y"); //y_w'_y'
-			if (!temp.equals(temp2)) {
-				temp = temp2; //y_w'_y'
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); //y_w'_y'  -- pushed
-			}
-			//medial waaw + hamza-on-the-line -> hamza-on-waaw
-			temp2 = temp.replaceFirst("w'", "&"); // y_&__y'
-			if (!temp.equals(temp2)) {
-				temp = temp2; // y_&__y'
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_&__y'  -- pushed
-			}
-			temp = translitered; // Y_w'_y'
-			//'alif maqSuura -> yaa'
-			temp = temp.replaceAll("Y", "y"); //y_w'_y'
-			//final yaa' + hamza-on-the-line -> 'alif maqSuura
-			temp = temp.replaceFirst("y'$", "}"); // y_w'_}
-			if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-			wordAlternativeSpellings.add(temp); // y_w'_}   -- pushed
-			//medial waaw + hamza-on-the-line -> hamza-on-waaw
-			temp2 = temp.replaceFirst("w'", "&"); // y_&__}
-			if (!temp.equals(temp2)) {
-				temp = temp2; // y_&__}
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_&__}   -- pushed
-			}
-		}
-		//final yaa'
-		else if (temp.matches(".*" + "y$")) { // Y_w'_y
-			//'alif maqSuura -> yaa'
-			temp = temp.replaceAll("Y", "y"); // y_w'_y
-			//medial waaw + hamza-on-the-line -> hamza-on-waaw
-			temp2 = temp.replaceFirst("w'", "&"); // y_&__y
-			if (!temp.equals(temp2)) {
-				temp = temp2; // y_&__y
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_&__y   -- pushed
-			}
-			temp = translitered; //Y_w'_y
-			//'alif maqSuura -> yaa'
-			temp = temp.replaceAll("Y", "y"); // y_w'_y
-			//final yaa' -> 'alif maqSuura
-			temp = temp.replaceAll("y$", "Y"); // y_w'_Y
-			if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-			wordAlternativeSpellings.add(temp); // y_w'_Y   -- pushed
-			//medial waaw + hamza-on-the-line -> hamza-on-waaw
-			temp2= temp.replaceFirst("w'", "&"); // y_&__Y
-			if (!temp.equals(temp2)) {
-				temp = temp2; // y_&__Y
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_&__Y   -- pushed
-			}
-		}
-		//final haa'
-		else if (temp.matches(".*" + "h$")) { // Y_w'_h
-			//'alif maqSuura -> yaa'
-			temp2 = temp.replaceAll("Y", "y"); // y_w'_h
-			if (!temp.equals(temp2)) {
-				temp = temp2; // y_w'_h
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_w'_h   -- pushed
-			}
-			//medial waaw + hamza-on-the-line -> hamza-on-waaw
-			temp2 = temp.replaceFirst("w'", "&"); // y_&__h
-			if (!temp.equals(temp2)) {
-				temp = temp2; // y_&__h
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_&__h   -- pushed
-			}
-			//final haa' -> taa' marbuuTa
-			temp = temp.replaceFirst("h$", "p"); // y_w'_p
-			if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-			wordAlternativeSpellings.add(temp); // y_w'_p   -- pushed
-		}
-		//final taa' marbuuTa
-		else if (temp.matches(".*" + "p$")) { // Y_w'_p
-			//'alif maqSuura -> yaa'
-			temp2 = temp.replaceAll("Y", "y"); // y_w'_p
-			if (!temp.equals(temp2)) {
-				temp = temp2; // y_w'_p
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_w'_p   -- pushed
-			}
-			//medial waaw + hamza-on-the-line -> hamza-on-waaw
-			temp2 = temp.replaceFirst("w'", "&"); // y_&__p
-			if (!temp.equals(temp2)) {
-				temp = temp2; // y_&__p
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_&__p   -- pushed
-			}
-			//final taa' marbuuTa -> haa'
-			temp = temp.replaceFirst("p$", "h"); //y_w'_h
-			if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-			wordAlternativeSpellings.add(temp); // //y_w'_h   -- pushed
-		}
-		//Substitutions before matching
-		else {
-			//final 'alif maqSuura -> yaa'
-			temp2 = temp.replaceFirst("Y$", "y"); // Y_w'_y
-			if (!temp.equals(temp2)) {
-				temp = temp2; // Y_w'_y
-				//'alif maqSuura -> yaa'
-				temp = temp.replaceAll("Y", "y"); // y_w'_y
-				if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-				wordAlternativeSpellings.add(temp); // y_w'_y   -- pushed
-				//medial waaw + hamza-on-the-line -> hamza-on-waaw
-				temp2 = temp.replaceFirst("w'", "&"); // y_&__y
-				if (!temp.equals(temp2)) {
-					temp = temp2; // y_&__y
-					if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-					wordAlternativeSpellings.add(temp); // y_&__y   -- pushed
-				}
-			}
-			else {
-				//'alif maqSuura -> yaa'
-				temp2 = temp.replaceAll("Y", "y"); // y_w'__
-				if (!temp.equals(temp2)) {
-					temp = temp2; // y_w'__
-					if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-					wordAlternativeSpellings.add(temp); // y_w'__   -- pushed
-					//medial waaw + hamza-on-the-line -> hamza-on-waaw
-					temp2 = temp.replaceFirst("w'", "&"); // y_&___
-					if (!temp.equals(temp2)) {
-						temp = temp2; // y_&___
-						if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-						wordAlternativeSpellings.add(temp); // y_&___   -- pushed
-					}
-				}
-				else {
-					//medial waaw + hamza-on-the-line -> hamza-on-waaw
-					temp2 = temp.replaceFirst("w'", "&"); // y_&___
-					if (!temp.equals(temp2)) {
-						temp = temp2; // y_&___
-						if (outputStream != null && verbose) outputStream.println("Found alternative spelling "+ temp + " for word " + translitered);
-						wordAlternativeSpellings.add(temp); // y_&___   -- pushed
-					}
-					else {} //nothing
-				}
-			}
-		}
-		//Add all alternative spellings, if any
-		if (!wordAlternativeSpellings.isEmpty()) sol.addAlternativeSpellings(translitered, wordAlternativeSpellings);
-		return (!wordAlternativeSpellings.isEmpty());
+		sol.addAlternativeSpellings(translitered, wordAlternativeSpellings);
+		return wordAlternativeSpellings;
+	}
+	
+	/** Returns the direct solutions of a word that has been found. They are computed again if they have been evicted
+	 * from the cache.
+	 * @param translitered The word
+	 * @return The solutions or <CODE>null</CODE> if the word has been found through its alternative spellings
+	 */
+	private Collection getFoundSolutions(String translitered) {
+		Collection wordSolutions = sol.getSolutions(translitered);
+		if (wordSolutions == null && !sol.hasAlternativeSpellings(translitered)) wordSolutions = feedWordSolutions(translitered);
+		return wordSolutions;
+	}
+	
+	/** Returns the alternative spellings of a word that has been found through them. They are computed again if they
+	 * have been evicted from the cache.
+	 * @param translitered The word
+	 * @return The alternative spellings
+	 */
+	private Collection getFoundAlternativeSpellings(String translitered) {
+		Collection wordAlternativeSpellings = feedAlternativeSpellings(translitered);
+		if (wordAlternativeSpellings == null)
+			throw new RuntimeException(translitered + " is found but has neither solutions nor alternative spellings !");
+		return wordAlternativeSpellings;
 	}
 	
 	/** Returns the solutions for a previously analyzed word.
@@ -751,25 +690,15 @@ public class AraMorph {
 		HashSet wordSolutions = new HashSet();
 		String translitered = romanizeWord(word);
 		if (found.containsKey(translitered)) {
-			if (sol.hasSolutions(translitered)) {
-				Iterator it_sol = sol.getSolutionsIterator(translitered);
-				while (it_sol != null && it_sol.hasNext()) {
-					Solution solution = (Solution)it_sol.next();
-					wordSolutions.add(solution);
-				}
-			}
-			if (sol.hasAlternativeSpellings(translitered)) {
-				Iterator it_alt = sol.getAlternativeSpellingsIterator(translitered);
-				while (it_alt != null && it_alt.hasNext()) {
+			Collection directSolutions = getFoundSolutions(translitered);
+			if (directSolutions != null) wordSolutions.addAll(directSolutions);
+			else {
+				Iterator it_alt = getFoundAlternativeSpellings(translitered).iterator();
+				while (it_alt.hasNext()) {
 					String alt = (String)it_alt.next();
 					//Notice that the alternative spelling may not be (yet) marked as found
-					if (sol.hasSolutions(alt)) {
-						Iterator it_sol = sol.getSolutionsIterator(alt);
-						while (it_sol != null && it_sol.hasNext()) {
-							Solution solution = (Solution)it_sol.next();
-							wordSolutions.add(solution);
-						}
-					}
+					Collection alternativeSolutions = feedWordSolutions(alt);
+					if (alternativeSolutions != null) wordSolutions.addAll(alternativeSolutions);
 				}
 			}
 		}
@@ -778,17 +707,20 @@ public class AraMorph {
 		return wordSolutions;
 	}
 	
-	/** Display the statistics on what has been analyzed so far. */
+	/** Display the statistics on what has been analyzed so far. The lines and tokens are counted for all the analyzers, the words for this one. */
 	public void printStats() {
 		DecimalFormat df = new DecimalFormat("##.##%");
 		double total = found.size() + notFound.size(); //double to force casting
 		System.out.println();
 		System.out.println("=================== Statistics ===================");
-		System.out.println("Lines : " + linesCounter);
-		System.out.println("Arabic tokens : " + arabicTokensCounter);
-		System.out.println("Non-arabic tokens : " + notArabicTokensCounter);
+		System.out.println("Lines : " + linesCounter.get());
+		System.out.println("Arabic tokens : " + arabicTokensCounter.get());
+		System.out.println("Non-arabic tokens : " + notArabicTokensCounter.get());
 		System.out.println("Words found : " + found.size() + " (" + df.format(found.size() / total) + ")");
 		System.out.println("Words not found : " + notFound.size() + " (" + df.format(notFound.size() / total) + ")");
+		if (dict.getStemShards() != -1) System.out.println("Stem shards loaded : " + dict.getLoadedStemShards() + "/" + dict.getStemShards());
+		if (dict.getJoinStatistics() != null) System.out.println(dict.getJoinStatistics());
+		System.out.println(sol.getStatistics());
 		System.out.println("==================================================");
 		System.out.println();
 	}
@@ -809,7 +741,7 @@ public class AraMorph {
 		System.err.println("araMorph inFile [inEncoding] [outFile] [outEncoding] [-v]");
 		System.err.println("");
 		System.err.println("inFile : file to be analyzed");
-		System.err.println("inEncoding : encoding for inFile, default CP1256");
+		System.err.println("inEncoding : encoding for inFile, default CP1256. Single-byte encodings are read directly from the bytes");
 		System.err.println("outFile : result file, default console");
 		System.err.println("outEncoding : encoding for outFile, if not specified use Buckwalter transliteration with system's file.encoding");
 		System.err.println("-v : verbose mode");
@@ -884,6 +816,7 @@ public class AraMorph {
 			if (inputEncoding == null) inputEncoding = "Cp1256"; //TODO : change default ?						
 			if (verbose == null) verbose = new Boolean(false);
 			LineNumberReader IN = null;
+			SingleByteTokenizer tokenizer = null;
 			PrintStream ps = null;
 			
 			if (outputFile != null) {
@@ -904,11 +837,19 @@ public class AraMorph {
 			
 			try {
 				AraMorph araMorph = new AraMorph(ps, verbose.booleanValue());				
-				IN = new LineNumberReader(new BufferedReader(new InputStreamReader(new FileInputStream(inputFile),inputEncoding)));
-				if (outputEncoding == null) 
-					araMorph.analyze(IN, true);
-				else
-					araMorph.analyze(IN, false);
+				Charset charset = Charset.forName(inputEncoding);
+				//legacy single-byte encodings, e.g. CP1256 or ISO-8859-6, are tokenized without being decoded first
+				if (SingleByteTokenizer.isSingleByte(charset)) {
+					tokenizer = new SingleByteTokenizer(new FileInputStream(inputFile), charset);
+					araMorph.analyze(tokenizer, outputEncoding == null);
+				}
+				else {
+					IN = new LineNumberReader(new BufferedReader(new InputStreamReader(new FileInputStream(inputFile),inputEncoding)));
+					if (outputEncoding == null) 
+						araMorph.analyze(IN, true);
+					else
+						araMorph.analyze(IN, false);
+				}
 				araMorph.printStats();
 			}
 			catch (IOException e) {
@@ -917,6 +858,7 @@ public class AraMorph {
 			finally {
 				try {
 					if (IN != null) IN.close();
+					if (tokenizer != null) tokenizer.close();
 				}
 				catch (IOException e) {}
 				if (ps != null) ps.close();
@@ -924,23 +866,4 @@ public class AraMorph {
 		}
 	}
 	
-	//Inner class
-	
-	private class SegmentedWord {
-		
-		private String prefix;
-		private String stem;
-		private String suffix;
-		
-		protected SegmentedWord(String prefix, String stem, String suffix) {
-			this.prefix = prefix;
-			this.stem = stem;
-			this.suffix = suffix;
-		}
-		
-		protected String getPrefix() { return this.prefix; }
-		protected String getStem() { return this.stem; }
-		protected String getSuffix() { return this.suffix; }
-	}
-	
 }
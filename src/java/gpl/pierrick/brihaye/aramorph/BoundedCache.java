@@ -0,0 +1,553 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** A bounded cache whose admission and eviction follow the W-TinyLFU policy.
+ * <P>New entries enter a small LRU window, 1% of the capacity. The entries that leave the window compete with the least
+ * recently used entries of the main space, a segmented LRU whose protected segment takes 80% of it : the one that has been
+ * the least frequently accessed, according to a count-min sketch of the recent accesses, is evicted. Thus, a burst of words
+ * that occur once cannot flush the frequent ones, whereas a word that becomes frequent soon gets in.</P>
+ * <P>The capacity is a maximum weight. Each entry weighs what it is given when it is put, e.g. <CODE>1</CODE> when the cache
+ * is sized by entry count, or an estimate of the memory it holds.</P>
+ * <P>The keys are {@link PackedWord packed} words, stored in open addressing as in {@link WordTable} : a lookup allocates nothing.
+ * The words that can not be packed are kept in an overflow map.</P>
+ * <P>The cache is thread-safe. Lookups do not block : the entries are published one by one and the accesses are recorded in
+ * {@link ReadBuffer lossy buffers}, one per stripe of threads, that are handed over to the policy by batches. Insertions and
+ * evictions take the policy's lock.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class BoundedCache {
+	
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+	/** The queue of the entries that have been evicted. */
+	private static final int EVICTED = -1;
+	
+	/** An entry, linked in the queue of its segment. */
+	private static final class Node {
+		/** The packed key or {@link PackedWord#OVERFLOW}. */
+		final long key;
+		/** The key of the entry if it can not be packed. */
+		final Object overflowKey;
+		final int hash;
+		volatile Object value;
+		int weight;
+		int queue;
+		Node previous;
+		Node next;
+	
+		Node(long key, Object overflowKey, Object value, int weight) {
+			this.key = key;
+			this.overflowKey = overflowKey;
+			this.hash = hash(key, overflowKey);
+			this.value = value;
+			this.weight = weight;
+			this.previous = this;
+			this.next = this;
+		}
+	}
+	
+	/** A count-min sketch of 4-bit counters, 16 of them per long, which are halved periodically so that the
+	 * frequencies reflect the recent accesses.
+	 */
+	private static final class FrequencySketch {
+		private static final int[] SEEDS = { 0x97CB3127, 0xB4B82E39, 0x8E5E9A7B, 0xD6E8FEB9 };
+		private final long[] table;
+		private final int mask;
+		private final int sampleSize;
+		private int increments = 0;
+	
+		FrequencySketch(long capacity) {
+			int length = 16;
+			while (length < capacity && length < (1 << 20)) length <<= 1;
+			table = new long[length];
+			mask = length - 1;
+			sampleSize = 10 * length;
+		}
+	
+		private static int spread(int hash, int seed) {
+			int h = hash * seed;
+			return h ^ (h >>> 17);
+		}
+	
+		void increment(int hash) {
+			boolean added = false;
+			for (int i = 0 ; i < SEEDS.length ; i++) {
+				int h = spread(hash, SEEDS[i]);
+				int index = (h >>> 8) & mask;
+				int offset = (h & 15) << 2;
+				if (((table[index] >>> offset) & 15) < 15) {
+					table[index] += 1L << offset;
+					added = true;
+				}
+			}
+			if (added && ++increments == sampleSize) {
+				for (int i = 0 ; i < table.length ; i++) table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+				increments /= 2;
+			}
+		}
+	
+		int frequency(int hash) {
+			int frequency = 15;
+			for (int i = 0 ; i < SEEDS.length ; i++) {
+				int h = spread(hash, SEEDS[i]);
+				int count = (int)((table[(h >>> 8) & mask] >>> ((h & 15) << 2)) & 15);
+				if (count < frequency) frequency = count;
+			}
+			return frequency;
+		}
+	}
+	
+	/** Buffers of the recent accesses, so that a lookup neither takes the policy's lock nor writes to a location shared by all
+	 * the threads. A buffer is drained when it is full, if the lock is free, and by every insertion. An access is dropped when
+	 * its buffer is full or contended : the policy only needs a sample of them. A miss is recorded as the hash of its key.
+	 */
+	private static final class ReadBuffer {
+		/** The access recorded by a miss. */
+		private static final Object MISS = new Object();
+		/** The number of slots of a buffer. */
+		private static final int SIZE = 16;
+		/** The distance, in longs, between the counters of two buffers, so that they are not on the same cache line. */
+		private static final int SPACING = 8;
+		/** The number of accesses written to each buffer. */
+		private final AtomicLongArray writes = new AtomicLongArray(StripedCounter.STRIPES * SPACING);
+		/** The number of accesses drained from each buffer. It is only written under the policy's lock. */
+		private final AtomicLongArray reads = new AtomicLongArray(StripedCounter.STRIPES * SPACING);
+		private final AtomicReferenceArray slots = new AtomicReferenceArray(StripedCounter.STRIPES * SIZE);
+		/** The hashes of the keys that were missed. */
+		private final AtomicIntegerArray hashes = new AtomicIntegerArray(StripedCounter.STRIPES * SIZE);
+		
+		/** Records an access in the buffer of the current thread.
+		 * @param node The entry or <CODE>null</CODE> if it is a miss
+		 * @param hash The hash of the key
+		 * @return Whether or not the buffer is full and should be drained
+		 */
+		boolean offer(Node node, int hash) {
+			int counter = StripedCounter.stripe() * SPACING;
+			long tail = writes.get(counter);
+			long head = reads.get(counter);
+			if (tail - head >= SIZE) return true;
+			if (!writes.compareAndSet(counter, tail, tail + 1)) return false;
+			int index = (counter / SPACING) * SIZE + (int)(tail & (SIZE - 1));
+			if (node == null) {
+				hashes.lazySet(index, hash);
+				slots.lazySet(index, MISS);
+			}
+			else slots.lazySet(index, node);
+			return tail + 1 - head >= SIZE;
+		}
+		
+		/** Hands the recorded accesses over to the policy. The caller must hold the policy's lock.
+		 * @param cache The cache
+		 */
+		void drain(BoundedCache cache) {
+			for (int stripe = 0 ; stripe < StripedCounter.STRIPES ; stripe++) {
+				long head = reads.get(stripe * SPACING);
+				long tail = writes.get(stripe * SPACING);
+				for ( ; head < tail ; head++) {
+					int index = stripe * SIZE + (int)(head & (SIZE - 1));
+					Object access = slots.get(index);
+					//not written yet : the next drain will get it
+					if (access == null) break;
+					slots.lazySet(index, null);
+					if (access == MISS) cache.sketch.increment(hashes.get(index));
+					else cache.onHit((Node)access);
+				}
+				reads.lazySet(stripe * SPACING, head);
+			}
+		}
+	}
+	
+	/** The entries whose key is packed, in open addressing. The table is only modified under the policy's lock, and replaced when it grows. */
+	private volatile AtomicReferenceArray table = new AtomicReferenceArray(64);
+	/** The number of entries whose key is packed. It is only written under the policy's lock. */
+	private volatile int packed = 0;
+	/** The entries whose key can not be packed. */
+	private final ConcurrentHashMap overflow = new ConcurrentHashMap();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final FrequencySketch sketch;
+	private final ReadBuffer readBuffer = new ReadBuffer();
+	/** The sentinels of the window, probation and protected queues. */
+	private final Node[] queues = new Node[3];
+	/** The weights of the window, probation and protected queues. */
+	private final long[] weights = new long[3];
+	private final long maximumWeight;
+	private final long windowMaximum;
+	private final long protectedMaximum;
+	private final StripedCounter hits = new StripedCounter();
+	private final StripedCounter misses = new StripedCounter();
+	private final StripedCounter evictions = new StripedCounter();
+	
+	/** Constructs an empty cache.
+	 * @param maximumWeight The maximum weight of the entries. <CODE>0</CODE> means that nothing is cached
+	 */
+	BoundedCache(long maximumWeight) {
+		if (maximumWeight < 0) throw new RuntimeException("Invalid cache capacity : " + maximumWeight);
+		this.maximumWeight = maximumWeight;
+		this.windowMaximum = Math.max(1, maximumWeight / 100);
+		this.protectedMaximum = (maximumWeight - windowMaximum) * 80 / 100;
+		this.sketch = new FrequencySketch(maximumWeight);
+		for (int i = 0 ; i < queues.length ; i++) queues[i] = new Node(0, null, null, 0);
+	}
+	
+	private static int hash(long key, Object overflowKey) {
+		if (key == PackedWord.OVERFLOW) return overflowKey.hashCode();
+		return (int)(key ^ (key >>> 32));
+	}
+	
+	/** Returns the slot of a packed key : the one where it is or where it should be inserted. */
+	private static int slot(AtomicReferenceArray table, long key) {
+		int mask = table.length() - 1;
+		int slot = home(key, mask);
+		Node node;
+		while ((node = (Node)table.get(slot)) != null && node.key != key) slot = (slot + 1) & mask;
+		return slot;
+	}
+	
+	/** Returns the slot where the probing of a packed key starts. */
+	private static int home(long key, int mask) {
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+	}
+	
+	/** Returns the entry of a key.
+	 * @param key The packed key or {@link PackedWord#OVERFLOW}
+	 * @param overflowKey The key if it can not be packed
+	 * @return The entry or <CODE>null</CODE>. An entry that is being added, moved or evicted by another thread may be missed
+	 */
+	private Node find(long key, Object overflowKey) {
+		if (key == PackedWord.OVERFLOW) return (Node)overflow.get(overflowKey);
+		AtomicReferenceArray current = table;
+		int mask = current.length() - 1;
+		Node node;
+		//each slot is read once : the entry that is returned is the one whose key has been compared
+		for (int slot = home(key, mask) ; (node = (Node)current.get(slot)) != null ; slot = (slot + 1) & mask) {
+			if (node.key == key) return node;
+		}
+		return null;
+	}
+	
+	/** Returns the value of a key and records the access.
+	 * @param key The packed key or {@link PackedWord#OVERFLOW}
+	 * @param overflowKey The key if it can not be packed
+	 * @return The value or <CODE>null</CODE> if the key is not cached
+	 */
+	Object get(long key, Object overflowKey) {
+		Node node = find(key, overflowKey);
+		if (node == null) misses.increment();
+		else hits.increment();
+		//the policy is informed of the accesses by batches, when it is not busy
+		if (readBuffer.offer(node, node == null ? hash(key, overflowKey) : 0) && lock.tryLock()) {
+			try {
+				readBuffer.drain(this);
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		return node == null ? null : node.value;
+	}
+	
+	/** Whether or not a key is cached. The access is not recorded.
+	 * @param key The packed key or {@link PackedWord#OVERFLOW}
+	 * @param overflowKey The key if it can not be packed
+	 * @return The result
+	 */
+	boolean containsKey(long key, Object overflowKey) {
+		return find(key, overflowKey) != null;
+	}
+	
+	/** Returns a copy of the cached entries. The accesses are not recorded.
+	 * @return The entries.
+	 * <PRE>key</PRE> = the packed key, as a <CODE>Long</CODE>, or the key if it can not be packed
+	 * <PRE>value</PRE> = its value
+	 */
+	Map getEntries() {
+		HashMap entries = new HashMap();
+		AtomicReferenceArray current = table;
+		for (int i = 0 ; i < current.length() ; i++) {
+			Node node = (Node)current.get(i);
+			if (node != null) entries.put(new Long(node.key), node.value);
+		}
+		Iterator it = overflow.values().iterator();
+		while (it.hasNext()) {
+			Node node = (Node)it.next();
+			entries.put(node.overflowKey, node.value);
+		}
+		return entries;
+	}
+	
+	/** Caches the value of a key. The value may be evicted at once if it is not deemed worth it.
+	 * @param key The packed key or {@link PackedWord#OVERFLOW}
+	 * @param overflowKey The key if it can not be packed
+	 * @param value The value
+	 * @param weight The weight of the entry. It is at least <CODE>1</CODE>
+	 */
+	void put(long key, Object overflowKey, Object value, int weight) {
+		if (weight < 1) weight = 1;
+		lock.lock();
+		try {
+			readBuffer.drain(this);
+			Node node = find(key, overflowKey);
+			if (node != null) {
+				sketch.increment(node.hash);
+				weights[node.queue] += weight - node.weight;
+				node.weight = weight;
+				node.value = value;
+				onAccess(node);
+			}
+			else {
+				node = new Node(key, overflowKey, value, weight);
+				sketch.increment(node.hash);
+				link(node, WINDOW);
+				insert(node);
+			}
+			evict();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/** Adds an entry to the table or to the overflow map. The caller must hold the policy's lock.
+	 * @param node The entry
+	 */
+	private void insert(Node node) {
+		if (node.key == PackedWord.OVERFLOW) {
+			overflow.put(node.overflowKey, node);
+			return;
+		}
+		AtomicReferenceArray current = table;
+		//keep the load factor under 2/3
+		if (3 * (packed + 1) > 2 * current.length()) {
+			AtomicReferenceArray grown = new AtomicReferenceArray(current.length() * 2);
+			for (int i = 0 ; i < current.length() ; i++) {
+				Node moved = (Node)current.get(i);
+				if (moved != null) grown.set(slot(grown, moved.key), moved);
+			}
+			current = grown;
+			table = current;
+		}
+		current.set(slot(current, node.key), node);
+		packed++;
+	}
+	
+	/** Removes an entry from the table or from the overflow map. The caller must hold the policy's lock.
+	 * In the table, the entries that follow it are moved back so that no probing is broken : a lookup that
+	 * runs meanwhile may miss them, but never finds a wrong entry.
+	 * @param node The entry
+	 */
+	private void delete(Node node) {
+		if (node.key == PackedWord.OVERFLOW) {
+			overflow.remove(node.overflowKey, node);
+			return;
+		}
+		AtomicReferenceArray current = table;
+		int mask = current.length() - 1;
+		int hole = slot(current, node.key);
+		int slot = hole;
+		Node moved;
+		while ((moved = (Node)current.get(slot = (slot + 1) & mask)) != null) {
+			int home = home(moved.key, mask);
+			//the entry stays where it is if its probing starts after the hole
+			if (hole <= slot ? (hole < home && home <= slot) : (hole < home || home <= slot)) continue;
+			current.set(hole, moved);
+			hole = slot;
+		}
+		current.set(hole, null);
+		packed--;
+	}
+	
+	private void link(Node node, int queue) {
+		Node sentinel = queues[queue];
+		node.previous = sentinel.previous;
+		node.next = sentinel;
+		sentinel.previous.next = node;
+		sentinel.previous = node;
+		node.queue = queue;
+		weights[queue] += node.weight;
+	}
+	
+	private void unlink(Node node) {
+		node.previous.next = node.next;
+		node.next.previous = node.previous;
+		weights[node.queue] -= node.weight;
+	}
+	
+	/** Returns the least recently used entry of a queue.
+	 * @param queue The queue
+	 * @return The entry or <CODE>null</CODE> if the queue is empty
+	 */
+	private Node first(int queue) {
+		Node node = queues[queue].next;
+		return node == queues[queue] ? null : node;
+	}
+	
+	/** Records a hit. The caller must hold the policy's lock.
+	 * @param node The entry
+	 */
+	private void onHit(Node node) {
+		sketch.increment(node.hash);
+		if (node.queue != EVICTED) onAccess(node);
+	}
+	
+	private void onAccess(Node node) {
+		unlink(node);
+		if (node.queue == WINDOW) link(node, WINDOW);
+		else {
+			link(node, PROTECTED);
+			//demote the least recently used protected entries
+			while (weights[PROTECTED] > protectedMaximum) {
+				Node demoted = first(PROTECTED);
+				unlink(demoted);
+				link(demoted, PROBATION);
+			}
+		}
+	}
+	
+	private void remove(Node node) {
+		unlink(node);
+		node.queue = EVICTED;
+		delete(node);
+		evictions.increment();
+	}
+	
+	private void evict() {
+		//the entries that overflow the window are candidates : they are appended to the probation queue
+		Node candidate = null;
+		while (weights[WINDOW] > windowMaximum) {
+			Node node = first(WINDOW);
+			unlink(node);
+			link(node, PROBATION);
+			if (candidate == null) candidate = node;
+		}
+		while (weights[WINDOW] + weights[PROBATION] + weights[PROTECTED] > maximumWeight) {
+			//the victims are the least recently used entries of the main space
+			Node victim = first(PROBATION);
+			if (victim == null || victim == candidate) {
+				Node node = first(PROTECTED);
+				if (node != null) victim = node;
+			}
+			if (victim == null) victim = first(WINDOW);
+			if (candidate == null || victim == candidate) {
+				if (victim == candidate) candidate = nextCandidate(candidate);
+				remove(victim);
+			}
+			//the least frequently accessed of the candidate and the victim is evicted
+			else if (candidate.weight <= maximumWeight - windowMaximum && sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+				remove(victim);
+			}
+			else {
+				Node rejected = candidate;
+				candidate = nextCandidate(candidate);
+				remove(rejected);
+			}
+		}
+	}
+	
+	private Node nextCandidate(Node candidate) {
+		return candidate.next == queues[PROBATION] ? null : candidate.next;
+	}
+	
+	/** Returns the number of cached entries.
+	 * @return The number of entries
+	 */
+	int size() {
+		return packed + overflow.size();
+	}
+	
+	/** Returns the weight of the cached entries.
+	 * @return The weight
+	 */
+	long getWeight() {
+		lock.lock();
+		try {
+			return weights[WINDOW] + weights[PROBATION] + weights[PROTECTED];
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/** Returns the maximum weight of the cached entries.
+	 * @return The maximum weight
+	 */
+	long getMaximumWeight() {
+		return maximumWeight;
+	}
+	
+	/** Returns the number of values found in the cache.
+	 * @return The number of hits
+	 */
+	long getHits() {
+		return hits.get();
+	}
+	
+	/** Returns the number of values that were not in the cache.
+	 * @return The number of misses
+	 */
+	long getMisses() {
+		return misses.get();
+	}
+	
+	/** Returns the number of entries that have been evicted, including the ones that were not admitted.
+	 * @return The number of evictions
+	 */
+	long getEvictions() {
+		return evictions.get();
+	}
+	
+	/** Returns the share of the values found in the cache.
+	 * @return The rate or <CODE>0</CODE> if nothing has been looked up
+	 */
+	double getHitRate() {
+		long hits = getHits();
+		long misses = getMisses();
+		if (hits + misses == 0) return 0;
+		return (double)hits / (hits + misses);
+	}
+	
+	/** Describes the counters of the cache.
+	 * @return The description
+	 */
+	String getStatistics() {
+		DecimalFormat df = new DecimalFormat("##.##%");
+		return getHits() + " hits, " + getMisses() + " misses (" + df.format(getHitRate()) + "), " + getEvictions() + " evictions, "
+			+ size() + " entries weighing " + getWeight() + "/" + maximumWeight;
+	}
+	
+}
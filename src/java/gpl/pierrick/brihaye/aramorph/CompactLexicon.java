@@ -0,0 +1,336 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** An immutable lexicon held in a few primitive arrays rather than in maps of entries, which saves
+ * a lot of heap and keeps the data of a key close together. It is a copy, in the heap, of a {@link MappedLexicon lexicon image}
+ * whose tables are read in bulk.
+ * <P>The keys are found through the {@link PerfectHash minimal perfect hash} of the image. The fields of the entries
+ * are stored in parallel arrays, as offsets in the strings region of the image, and served as lightweight
+ * {@link DictionaryEntry views}. Their {@link EntryGroups groups} by category are computed when their key is first looked up,
+ * without a lock : two threads may both compute the groups of a key, and one of them is kept. Since the groups only have
+ * final fields, a thread that reads them from the shared array sees them fully built.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class CompactLexicon implements SortedLexicon {
+	
+	/** The number of keys, hence of slots. */
+	private int keyCount;
+	/** The displacement of each bucket. */
+	private int[] displacements;
+	/** The key of each slot. */
+	private int[] slotKeys;
+	/** The ISO-8859-1 chars of the keys, in ascending order. */
+	private byte[] keyBytes;
+	/** The offset of each key in {@link #keyBytes}. */
+	private int[] keyOffsets;
+	/** The first entry of each key. */
+	private int[] entryStarts;
+	/** The fields of the entries : offsets in the strings region... */
+	private int[] entries;
+	private int[] lemmaIDs;
+	private int[] vocalizations;
+	private int[] morphologies;
+	private int[] glosses;
+	private int[] glossesLists;
+	private int[] POSLists;
+	/** ... and category IDs. */
+	private int[] categories;
+	/** The strings region : strings (unsigned short length + UTF-8 bytes) and lists of strings (unsigned short count + int offsets). */
+	private byte[] strings;
+	/** The first group of each key. */
+	private int[] groupStarts;
+	/** The category of each group. */
+	private int[] groupCategories;
+	/** The first member of each group. */
+	private int[] memberStarts;
+	/** The entries of the groups. */
+	private int[] members;
+	/** The groups of the keys looked up so far, built on first use. */
+	private EntryGroups[] groups;
+	
+	/** Copies a lexicon image in the heap.
+	 * @param image The image
+	 */
+	CompactLexicon(MappedLexicon image) {
+		keyCount = image.size();
+		displacements = image.readDisplacements();
+		slotKeys = image.readSlotKeys();
+		keyBytes = image.readKeys();
+		keyOffsets = image.readKeyOffsets();
+		entryStarts = image.readKeyEntries();
+		int count = image.getEntryCount();
+		int[] records = image.readRecords();
+		entries = new int[count];
+		lemmaIDs = new int[count];
+		vocalizations = new int[count];
+		morphologies = new int[count];
+		glosses = new int[count];
+		glossesLists = new int[count];
+		POSLists = new int[count];
+		categories = new int[count];
+		for (int e = 0 ; e < count ; e++) {
+			int record = MappedLexicon.FIELDS * e;
+			entries[e] = records[record + MappedLexicon.ENTRY];
+			lemmaIDs[e] = records[record + MappedLexicon.LEMMA_ID];
+			vocalizations[e] = records[record + MappedLexicon.VOCALIZATION];
+			morphologies[e] = records[record + MappedLexicon.MORPHOLOGY];
+			glosses[e] = records[record + MappedLexicon.GLOSS];
+			glossesLists[e] = records[record + MappedLexicon.GLOSSES];
+			POSLists[e] = records[record + MappedLexicon.POS];
+			categories[e] = image.getCategory(e);
+		}
+		strings = image.readStrings();
+		computeGroups();
+		groups = new EntryGroups[keyCount];
+	}
+	
+	/** Builds a compact copy of a lexicon, laying it out as an image first.
+	 * @param source The lexicon
+	 * @param table The categories of the lexicon, where the morphologies of the entries are interned
+	 * @return The copy
+	 * @throws RuntimeException If the lexicon can not be laid out
+	 */
+	static CompactLexicon build(Lexicon source, MorphologyCategories table) throws RuntimeException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			MappedLexicon.write(out, source);
+			out.flush();
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Can not build lexicon : " + e.getMessage());
+		}
+		return new CompactLexicon(new MappedLexicon(ByteBuffer.wrap(bytes.toByteArray()), table));
+	}
+	
+	/** Groups the entries of every key by category, in the order of their first entry. */
+	private void computeGroups() {
+		IntList starts = new IntList();
+		IntList groupList = new IntList();
+		groupStarts = new int[keyCount + 1];
+		members = new int[categories.length];
+		int m = 0;
+		for (int k = 0 ; k < keyCount ; k++) {
+			groupStarts[k] = groupList.size();
+			for (int e = entryStarts[k] ; e < entryStarts[k + 1] ; e++) {
+				//already grouped ?
+				boolean grouped = false;
+				for (int g = groupStarts[k] ; g < groupList.size() && !grouped ; g++) grouped = (groupList.get(g) == categories[e]);
+				if (grouped) continue;
+				groupList.add(categories[e]);
+				starts.add(m);
+				for (int f = e ; f < entryStarts[k + 1] ; f++) {
+					if (categories[f] == categories[e]) members[m++] = f;
+				}
+			}
+		}
+		groupStarts[keyCount] = groupList.size();
+		starts.add(m);
+		groupCategories = groupList.toArray();
+		memberStarts = starts.toArray();
+	}
+	
+	/** Returns the index of a key.
+	 * @param key The key
+	 * @return The index or <CODE>-1</CODE> if the key is not in the lexicon
+	 */
+	int findKey(String key) {
+		return indexOf(key, 0, key.length());
+	}
+	
+	public int indexOf(CharSequence chars, int start, int end) {
+		if (keyCount == 0) return -1;
+		long hash = PerfectHash.hash(chars, start, end);
+		int k = slotKeys[PerfectHash.slot(hash, displacements[PerfectHash.bucket(hash, displacements.length)], keyCount)];
+		int offset = keyOffsets[k];
+		if (keyOffsets[k + 1] - offset != end - start) return -1;
+		for (int i = start ; i < end ; i++) {
+			if ((keyBytes[offset++] & 0xFF) != chars.charAt(i)) return -1;
+		}
+		return k;
+	}
+	
+	private String getKey(int k) {
+		char[] chars = new char[keyOffsets[k + 1] - keyOffsets[k]];
+		for (int i = 0 ; i < chars.length ; i++) chars[i] = (char)(keyBytes[keyOffsets[k] + i] & 0xFF);
+		return new String(chars);
+	}
+	
+	private int getUnsignedShort(int offset) {
+		return ((strings[offset] & 0xFF) << 8) | (strings[offset + 1] & 0xFF);
+	}
+	
+	private int getInt(int offset) {
+		return ((strings[offset] & 0xFF) << 24) | ((strings[offset + 1] & 0xFF) << 16) | ((strings[offset + 2] & 0xFF) << 8) | (strings[offset + 3] & 0xFF);
+	}
+	
+	/** Decodes a string of the strings region.
+	 * @param offset The offset of the string
+	 * @return The string
+	 */
+	private String getString(int offset) {
+		int length = getUnsignedShort(offset);
+		int start = offset + 2;
+		char[] chars = new char[length];
+		for (int i = 0 ; i < length ; i++) {
+			byte b = strings[start + i];
+			//non-ASCII : let the JDK decode it
+			if (b < 0) {
+				try {
+					return new String(strings, start, length, "UTF-8");
+				}
+				catch (UnsupportedEncodingException e) {
+					throw new RuntimeException("UTF-8 is not supported");
+				}
+			}
+			chars[i] = (char)b;
+		}
+		return new String(chars);
+	}
+	
+	/** Decodes a list of strings of the strings region.
+	 * @param offset The offset of the list
+	 * @return The strings
+	 */
+	private String[] getStrings(int offset) {
+		String[] list = new String[getUnsignedShort(offset)];
+		for (int i = 0 ; i < list.length ; i++) list[i] = getString(getInt(offset + 2 + 4 * i));
+		return list;
+	}
+	
+	public boolean hasKey(String key) {
+		return findKey(key) != -1;
+	}
+	
+	public Collection getEntries(String key) {
+		int k = findKey(key);
+		if (k == -1) return null;
+		return new EntryList(entryStarts[k], entryStarts[k + 1]);
+	}
+	
+	public EntryGroups getGroups(String key) {
+		int k = findKey(key);
+		return (k == -1) ? null : getGroups(k);
+	}
+	
+	public EntryGroups getGroups(int k) {
+		//groups are immutable : a concurrent thread would at worst build them again
+		EntryGroups cached = groups[k];
+		if (cached == null) {
+			cached = buildGroups(k);
+			groups[k] = cached;
+		}
+		return cached;
+	}
+	
+	private EntryGroups buildGroups(int k) {
+		int first = groupStarts[k];
+		int[] groupIDs = new int[groupStarts[k + 1] - first];
+		DictionaryEntry[][] groupEntries = new DictionaryEntry[groupIDs.length][];
+		for (int g = 0 ; g < groupIDs.length ; g++) {
+			groupIDs[g] = groupCategories[first + g];
+			groupEntries[g] = new DictionaryEntry[memberStarts[first + g + 1] - memberStarts[first + g]];
+			for (int i = 0 ; i < groupEntries[g].length ; i++) groupEntries[g][i] = new CompactEntry(members[memberStarts[first + g] + i]);
+		}
+		return new EntryGroups(groupIDs, groupEntries);
+	}
+	
+	public int size() {
+		return keyCount;
+	}
+	
+	public Iterator keys() {
+		return new Iterator() {
+			private int k = 0;
+			public boolean hasNext() { return k < keyCount; }
+			public Object next() {
+				if (k >= keyCount) throw new NoSuchElementException();
+				return getKey(k++);
+			}
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+	
+	/** The entries of a key, as views. */
+	private class EntryList extends AbstractList {
+		
+		private int first;
+		private int limit;
+		
+		private EntryList(int first, int limit) {
+			this.first = first;
+			this.limit = limit;
+		}
+		
+		public Object get(int index) {
+			if (index < 0 || first + index >= limit) throw new IndexOutOfBoundsException("Index: " + index);
+			return new CompactEntry(first + index);
+		}
+		
+		public int size() {
+			return limit - first;
+		}
+	}
+	
+	/** A view on an entry of the lexicon. */
+	private class CompactEntry extends DictionaryEntry {
+		
+		private int e;
+		
+		private CompactEntry(int e) {
+			this.e = e;
+		}
+		
+		protected String getEntry() { return getString(entries[e]); }
+		
+		protected String getLemmaID() { return getString(lemmaIDs[e]); }
+		
+		protected String getVocalization() { return getString(vocalizations[e]); }
+		
+		protected String getMorphology() { return getString(morphologies[e]); }
+		
+		protected String[] getPOS() { return getStrings(POSLists[e]); }
+		
+		protected String getGloss() { return getString(glosses[e]); }
+		
+		protected String[] getGlosses() { return getStrings(glossesLists[e]); }
+		
+		protected int getCategory() { return categories[e]; }
+	}
+	
+}
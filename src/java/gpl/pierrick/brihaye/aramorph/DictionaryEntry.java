@@ -40,6 +40,8 @@ class DictionaryEntry {
 	private String gloss;
 	private String[] glosses;	
 	private String[] POS;
+	/** The ID of the morphology in its lexicon's {@link MorphologyCategories categories}. */
+	private int category = -1;
 	
 	protected DictionaryEntry(String entry, String lemmaID, String vocalization, String morphology, String gloss, String POS) {
 		this.entry = entry.trim();
@@ -75,6 +77,21 @@ class DictionaryEntry {
 		}		
 	}
 	
+	/** Constructs an entry whose glosses and POS have already been split, e.g. when read from a snapshot. */
+	protected DictionaryEntry(String entry, String lemmaID, String vocalization, String morphology, String gloss, String[] glosses, String[] POS) {
+		this.entry = entry;
+		this.lemmaID = lemmaID;
+		this.vocalization = vocalization;
+		this.morphology = morphology;
+		this.gloss = gloss;
+		this.glosses = glosses;
+		this.POS = POS;
+	}
+	
+	/** Constructs an entry whose fields are provided by overriding the getters. */
+	protected DictionaryEntry() {
+	}
+
 	protected String getEntry() { return this.entry; }
 	
 	protected String getLemmaID() { return this.lemmaID; }
@@ -89,6 +106,10 @@ class DictionaryEntry {
 	
 	protected String[] getGlosses() { return this.glosses; }
 	
+	protected int getCategory() { return this.category; }
+	
+	void setCategory(int category) { this.category = category; }
+	
 }
 
 
@@ -0,0 +1,389 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/** A compiled binary image of the dictionaries. Loading it avoids parsing the text resources
+ * (and cleaning up their glosses) at every startup.
+ * <P>The snapshot starts with a header :
+ * <PRE>magic (int), version (int), source checksum (long), payload length (int), payload checksum (long)</PRE>
+ * The source checksum is computed over the 6 text resources the snapshot was built from : when they are avalaible
+ * in the classpath, newer than the snapshot and do not match anymore, the snapshot is considered stale and rejected.
+ * The payload checksum protects against corrupted files. Checking it reads the whole snapshot, which defeats the lazy and
+ * mapped modes : it is only done when the <CODE>aramorph.dictionary.snapshot.verify</CODE> system property is set to
+ * <CODE>true</CODE> or by the {@link #main(String[]) snapshot tool}. Truncated files are always rejected.</P>
+ * <P>The payload contains the 3 lexicons, the 3 compatibility tables, then the {@link KeyAutomaton automata} of the stems and of their {@link SpellingNormalizer normalized} forms. Each lexicon is preceded by its length
+ * in bytes and laid out as described in {@link MappedLexicon}, so that it can be used in place, without being read.
+ * Strings are stored as an unsigned short length followed by their UTF-8 bytes.</P>
+ * <P>The snapshot is normally found in the classpath. Setting the <CODE>aramorph.dictionary.snapshot</CODE>
+ * system property to the path of a snapshot file overrides it : several JVMs mapping the same file share its pages.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class DictionarySnapshot {
+	
+	/** The snapshot resource, relative to this package. */
+	static final String RESOURCE = "dictionaries/dictionaries.bin";
+	/** The system property giving the path of a snapshot file to be used instead of the resource. */
+	static final String FILE_PROPERTY = "aramorph.dictionary.snapshot";
+	/** Whether or not the payload checksum should be checked when the snapshot is opened. */
+	static final String VERIFY_PROPERTY = "aramorph.dictionary.snapshot.verify";
+	/** The text resources the snapshot is built from, in checksum order. */
+	static final String[] SOURCES = { "dictPrefixes", "dictStems", "dictSuffixes", "tableAB", "tableAC", "tableBC" };
+	/** "ARMS" */
+	private static final int MAGIC = 0x41524D53;
+	/** Bump it whenever the layout changes. */
+	static final int VERSION = 6;
+	/** The lexicon is entirely copied in the heap, as a {@link CompactLexicon}. */
+	static final int EAGER = 0;
+	/** The lexicon is read in the heap by shards, on first use. */
+	static final int LAZY = 1;
+	/** The lexicon is used in place. */
+	static final int MAPPED = 2;
+	/** magic + version + source checksum + payload length + payload checksum */
+	private static final int HEADER_LENGTH = 4 + 4 + 8 + 4 + 8;
+	
+	/** No instances. */
+	private DictionarySnapshot() {}
+	
+	/** Computes a checksum over the text resources.
+	 * @return The checksum or <CODE>-1</CODE> if one of the resources is not avalaible
+	 * @throws RuntimeException If a problem occurs when reading the resources
+	 */
+	static long computeSourceChecksum() throws RuntimeException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[65536];
+		for (int i = 0 ; i < SOURCES.length ; i++) {
+			InputStream is = DictionarySnapshot.class.getResourceAsStream("dictionaries/" + SOURCES[i]);
+			if (is == null) return -1;
+			try {
+				int read;
+				while ((read = is.read(buffer)) != -1) crc.update(buffer, 0, read);
+				is.close();
+			}
+			catch (IOException e) {
+				throw new RuntimeException("Can not open : " + SOURCES[i]);
+			}
+		}
+		return crc.getValue();
+	}
+	
+	/** Returns the last modification time of a resource.
+	 * @param url The resource
+	 * @return The time or <CODE>0</CODE> if it is unknown
+	 */
+	private static long getLastModified(URL url) {
+		try {
+			if ("file".equals(url.getProtocol())) return new File(URLDecoder.decode(url.getFile(), "UTF-8")).lastModified();
+			URLConnection connection = url.openConnection();
+			return connection.getLastModified();
+		}
+		catch (IOException e) {
+			return 0;
+		}
+	}
+	
+	/** Whether or not some text resource may have changed since the snapshot was built.
+	 * @param snapshotTime The last modification time of the snapshot, <CODE>0</CODE> if unknown
+	 * @return <CODE>false</CODE> if the resources are not avalaible or if they are all older than the snapshot
+	 */
+	private static boolean hasNewerSources(long snapshotTime) {
+		boolean newer = false;
+		for (int i = 0 ; i < SOURCES.length ; i++) {
+			URL url = DictionarySnapshot.class.getResource("dictionaries/" + SOURCES[i]);
+			if (url == null) return false;
+			long time = getLastModified(url);
+			if (time == 0 || snapshotTime == 0 || time > snapshotTime) newer = true;
+		}
+		return newer;
+	}
+	
+	/** Returns the name of the snapshot in use.
+	 * @return The path given by the <CODE>aramorph.dictionary.snapshot</CODE> property or the resource name
+	 */
+	static String getName() {
+		String path = System.getProperty(FILE_PROPERTY);
+		return (path == null) ? RESOURCE : path;
+	}
+	
+	/** Opens the snapshot and checks its header. Snapshots avalaible as files are memory-mapped ;
+	 * others are read in a single pass.
+	 * @return A buffer positioned at the start of the payload or <CODE>null</CODE> if there is no snapshot
+	 * or if it is unusable
+	 * @throws RuntimeException If a problem occurs when reading the snapshot
+	 */
+	static ByteBuffer open() throws RuntimeException {
+		String path = System.getProperty(FILE_PROPERTY);
+		URL url = null;
+		if (path == null) {
+			url = DictionarySnapshot.class.getResource(RESOURCE);
+			if (url == null) return null;
+		}
+		ByteBuffer buffer = null;
+		long snapshotTime = 0;
+		try {
+			if (path != null || "file".equals(url.getProtocol())) {
+				File f = (path != null) ? new File(path) : new File(URLDecoder.decode(url.getFile(), "UTF-8"));
+				snapshotTime = f.lastModified();
+				RandomAccessFile file = new RandomAccessFile(f, "r");
+				FileChannel channel = file.getChannel();
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				file.close(); //the mapping remains valid
+			}
+			else {
+				snapshotTime = getLastModified(url);
+				InputStream is = url.openStream();
+				ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 22);
+				byte[] chunk = new byte[65536];
+				int read;
+				while ((read = is.read(chunk)) != -1) bos.write(chunk, 0, read);
+				is.close();
+				buffer = ByteBuffer.wrap(bos.toByteArray());
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Can not open : " + getName());
+		}
+		if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+			System.out.println("Ignoring " + getName() + " : not a dictionary snapshot");
+			return null;
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			System.out.println("Ignoring " + getName() + " : version " + version + " instead of " + VERSION);
+			return null;
+		}
+		long sourceChecksum = buffer.getLong();
+		int payloadLength = buffer.getInt();
+		long payloadChecksum = buffer.getLong();
+		//checking the whole payload would touch every page of a mapped snapshot
+		if (buffer.remaining() != payloadLength || (Boolean.getBoolean(VERIFY_PROPERTY) && checksum(buffer) != payloadChecksum)) {
+			System.out.println("Ignoring " + getName() + " : corrupted snapshot");
+			return null;
+		}
+		//the text resources are only read when they may have changed since the snapshot was built
+		if (hasNewerSources(snapshotTime)) {
+			long currentChecksum = computeSourceChecksum();
+			if (currentChecksum != -1 && currentChecksum != sourceChecksum) {
+				System.out.println("Ignoring " + getName() + " : stale snapshot, the dictionaries have changed");
+				return null;
+			}
+		}
+		return buffer;
+	}
+	
+	/** Returns the checksum of the text resources recorded in the header of a snapshot.
+	 * @param buffer The snapshot, as returned by {@link #open()}
+	 * @return The checksum
+	 */
+	static long getSourceChecksum(ByteBuffer buffer) {
+		return buffer.getLong(4 + 4);
+	}
+	
+	/** Computes the checksum of the remaining bytes of a buffer without changing its position.
+	 * @param buffer The buffer
+	 * @return The checksum
+	 */
+	private static long checksum(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate());
+		return crc.getValue();
+	}
+	
+	/** Reads a lexicon from a snapshot.
+	 * @param buffer The buffer, positioned at the start of the lexicon
+	 * @param mode How the lexicon should be read : {@link #EAGER}, {@link #LAZY} or {@link #MAPPED}
+	 * @param categories The categories of the lexicon, where the morphologies of the entries are interned
+	 * @return The lexicon
+	 */
+	static SortedLexicon readLexicon(ByteBuffer buffer, int mode, MorphologyCategories categories) {
+		int length = buffer.getInt();
+		ByteBuffer region = buffer.slice();
+		region.limit(length);
+		buffer.position(buffer.position() + length);
+		MappedLexicon image = new MappedLexicon(region, categories);
+		if (mode == MAPPED) return image;
+		if (mode == LAZY) return new ShardedLexicon(image);
+		return new CompactLexicon(image);
+	}
+	
+	/** Reads an automaton of the stems from a snapshot.
+	 * @param buffer The buffer, positioned at the start of the automaton
+	 * @return The automaton
+	 */
+	static KeyAutomaton readAutomaton(ByteBuffer buffer) {
+		return KeyAutomaton.read(buffer);
+	}
+	
+	/** Reads a compatibility table from a snapshot.
+	 * @param buffer The buffer, positioned at the start of the table
+	 * @param set The table
+	 */
+	static void readCompatibilityTable(ByteBuffer buffer, Set set) {
+		byte[] scratch = new byte[256];
+		int count = buffer.getInt();
+		for (int i = 0 ; i < count ; i++) set.add(readString(buffer, scratch));
+	}
+	
+	private static String readString(ByteBuffer buffer, byte[] scratch) {
+		int length = buffer.getShort() & 0xFFFF;
+		if (length == 0) return "";
+		if (length > scratch.length) scratch = new byte[length];
+		buffer.get(scratch, 0, length);
+		try {
+			return new String(scratch, 0, length, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("UTF-8 is not supported");
+		}
+	}
+	
+	/** Writes a snapshot.
+	 * @param os The stream
+	 * @param sourceChecksum The checksum of the text resources, as computed by {@link #computeSourceChecksum()}
+	 * @param prefixes Dictionary of prefixes
+	 * @param stems Dictionary of stems
+	 * @param suffixes Dictionary of suffixes
+	 * @param AB Compatibility table for prefixes-stems combinations
+	 * @param AC Compatibility table for prefixes-suffixes combinations
+	 * @param BC Compatibility table for stems-suffixes combinations
+	 * @param stemAutomaton Automaton of the stems
+	 * @param normalizedStemAutomaton Automaton of the normalized stems
+	 * @throws IOException If a problem occurs when writing the snapshot
+	 */
+	static void write(OutputStream os, long sourceChecksum, Lexicon prefixes, Lexicon stems, Lexicon suffixes, Set AB, Set AC, Set BC, KeyAutomaton stemAutomaton, KeyAutomaton normalizedStemAutomaton) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(1 << 22);
+		DataOutputStream out = new DataOutputStream(payload);
+		writeDictionary(out, prefixes);
+		writeDictionary(out, stems);
+		writeDictionary(out, suffixes);
+		writeCompatibilityTable(out, AB);
+		writeCompatibilityTable(out, AC);
+		writeCompatibilityTable(out, BC);
+		stemAutomaton.write(out);
+		normalizedStemAutomaton.write(out);
+		out.flush();
+		byte[] bytes = payload.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		DataOutputStream header = new DataOutputStream(os);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeLong(sourceChecksum);
+		header.writeInt(bytes.length);
+		header.writeLong(crc.getValue());
+		header.write(bytes);
+		header.flush();
+	}
+	
+	/** Writes a lexicon, preceded by its length.
+	 * @param out The stream
+	 * @param lexicon The lexicon
+	 * @throws IOException If a problem occurs when writing the lexicon
+	 */
+	private static void writeDictionary(DataOutputStream out, Lexicon lexicon) throws IOException {
+		ByteArrayOutputStream region = new ByteArrayOutputStream();
+		DataOutputStream regionOut = new DataOutputStream(region);
+		MappedLexicon.write(regionOut, lexicon);
+		regionOut.flush();
+		out.writeInt(region.size());
+		region.writeTo(out);
+	}
+	
+	private static void writeCompatibilityTable(DataOutputStream out, Set set) throws IOException {
+		out.writeInt(set.size());
+		Iterator it = set.iterator();
+		while (it.hasNext()) writeString(out, (String)it.next());
+	}
+	
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		if (bytes.length > 0xFFFF) throw new IOException("String too long for a snapshot : " + s.substring(0, 32) + "...");
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+	
+	/** Builds a snapshot from the text dictionaries avalaible in the classpath or, with <CODE>-verify</CODE>, checks a snapshot,
+	 * its payload checksum included.
+	 * @param args The snapshot file to be written, or <CODE>-verify</CODE> and the snapshot file to be checked
+	 */
+	public static void main(String[] args) {
+		if (args.length == 2 && "-verify".equals(args[0])) {
+			System.setProperty(FILE_PROPERTY, args[1]);
+			System.setProperty(VERIFY_PROPERTY, "true");
+			if (open() != null) System.out.println(args[1] + " is a valid snapshot");
+			return;
+		}
+		if (args.length != 1) {
+			System.err.println("Usage : DictionarySnapshot outFile");
+			System.err.println("        DictionarySnapshot -verify snapshotFile");
+			return;
+		}
+		HashSet hash_AB = new HashSet();
+		HashSet hash_AC = new HashSet();
+		HashSet hash_BC = new HashSet();
+		InMemoryDictionaryHandler.loadTextDictionaries(hash_AB, hash_AC, hash_BC);
+		OutputStream os = null;
+		try {
+			File file = new File(args[0]);
+			if (file.getParentFile() != null) file.getParentFile().mkdirs();
+			os = new BufferedOutputStream(new FileOutputStream(file));
+			InMemoryDictionaryHandler.saveSnapshot(os, hash_AB, hash_AC, hash_BC);
+			os.close();
+			os = null;
+			System.out.println("Snapshot written to " + file + " (" + file.length() + " bytes)");
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Can not write snapshot : " + e.getMessage());
+		}
+		finally {
+			try {
+				if (os != null) os.close();
+			}
+			catch (IOException e) {}
+		}
+	}
+	
+}
@@ -0,0 +1,108 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+/** The entries of a key, grouped by {@link MorphologyCategories morphological category}. Since compatibility
+ * only depends on the categories, a whole group of homographs can be accepted or rejected at once.
+ * Groups are in the order of their first entry in the dictionary and keep the order of their entries.
+ * They are immutable and can be cached and shared by several threads.
+ * @author Pierrick Brihaye, 2003
+ */
+class EntryGroups {
+	
+	/** The category of each group. */
+	private final int[] categories;
+	/** The entries of each group. */
+	private final DictionaryEntry[][] entries;
+	
+	/** Constructs groups of entries.
+	 * @param categories The category of each group
+	 * @param entries The entries of each group
+	 */
+	EntryGroups(int[] categories, DictionaryEntry[][] entries) {
+		this.categories = categories;
+		this.entries = entries;
+	}
+	
+	/** Groups some entries by category. Their categories must have been assigned.
+	 * @param collection The entries
+	 * @return The groups
+	 */
+	static EntryGroups group(Collection collection) {
+		ArrayList categoryList = new ArrayList();
+		ArrayList groupList = new ArrayList();
+		Iterator it = collection.iterator();
+		while (it.hasNext()) {
+			DictionaryEntry de = (DictionaryEntry)it.next();
+			Integer category = new Integer(de.getCategory());
+			//a key has only a few categories
+			int g = categoryList.indexOf(category);
+			if (g == -1) {
+				g = categoryList.size();
+				categoryList.add(category);
+				groupList.add(new ArrayList(2));
+			}
+			((ArrayList)groupList.get(g)).add(de);
+		}
+		int[] categories = new int[categoryList.size()];
+		DictionaryEntry[][] entries = new DictionaryEntry[categories.length][];
+		for (int g = 0 ; g < categories.length ; g++) {
+			categories[g] = ((Integer)categoryList.get(g)).intValue();
+			ArrayList group = (ArrayList)groupList.get(g);
+			entries[g] = (DictionaryEntry[])group.toArray(new DictionaryEntry[group.size()]);
+		}
+		return new EntryGroups(categories, entries);
+	}
+	
+	/** Returns the number of groups.
+	 * @return The number of groups
+	 */
+	int size() {
+		return categories.length;
+	}
+	
+	/** Returns the category of a group.
+	 * @param g The index of the group
+	 * @return The ID of the category
+	 */
+	int getCategory(int g) {
+		return categories[g];
+	}
+	
+	/** Returns the entries of a group.
+	 * @param g The index of the group
+	 * @return The entries. Not to be modified
+	 */
+	DictionaryEntry[] getEntries(int g) {
+		return entries[g];
+	}
+	
+}
@@ -27,12 +27,9 @@ http://www.fsf.org/copyleft/gpl.html
 package gpl.pierrick.brihaye.aramorph;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.collections.MultiHashMap;
 
@@ -44,41 +41,143 @@ import org.apache.commons.collections.MultiHashMap;
 class InMemoryDictionaryHandler {
 	
 	/** The unique instance of this handler. */
-	private static InMemoryDictionaryHandler handler = null;
+	private static volatile InMemoryDictionaryHandler handler = null;
+	/** Whether or not the stems should be loaded on first use, by shards. */
+	static final String LAZY_PROPERTY = "aramorph.dictionary.lazy";
+	/** Whether or not the stems should be used in place, in the memory-mapped snapshot, rather than in the heap. */
+	static final String MAPPED_PROPERTY = "aramorph.dictionary.mapped";
 	/** Dictionary of prefixes */
-	private static MultiHashMap prefixes = new MultiHashMap(78);
+	private static SortedLexicon prefixes = null;
 	/** Dictionary of stems */
-	private static MultiHashMap stems = new MultiHashMap(47261);
+	private static SortedLexicon stems = null;
 	/** Dictionary of suffixes */
-	private static MultiHashMap suffixes = new MultiHashMap(206);
-	/** Compatibility table for prefixes-stems combinations.
-	 * TODO : definitely not the best container
-	 */
-	private static HashSet hash_AB = new HashSet(1648);
-	/** Compatibility table for prefixes-suffixes combinations.
-	 * TODO : definitely not the best container
-	 */
-	private static HashSet hash_AC = new HashSet(598);
-	/** Compatibility table for stems-suffixes combinations.
-	 * TODO : definitely not the best container
-	 */
-	private static HashSet hash_BC = new HashSet(1285);
+	private static SortedLexicon suffixes = null;
+	/** Automaton of the stems, giving every stem that starts at a given position of a word */
+	private static KeyAutomaton stemAutomaton = null;
+	/** Automaton of the prefixes, giving every prefix of a word */
+	private static KeyAutomaton prefixAutomaton = null;
+	/** Automaton of the reversed suffixes, giving every suffix of a word */
+	private static KeyAutomaton suffixAutomaton = null;
+	/** Automata of the {@link SpellingNormalizer normalized} prefixes, stems and reversed suffixes, checking whether some alternative spelling of a word may be segmented */
+	private static KeyAutomaton normalizedPrefixAutomaton = null;
+	private static KeyAutomaton normalizedStemAutomaton = null;
+	private static KeyAutomaton normalizedSuffixAutomaton = null;
+	/** The lengths of the prefixes, stems and suffixes */
+	private static SegmentationBounds bounds = null;
+	/** Morphological categories of the prefixes */
+	private static MorphologyCategories prefixCategories = new MorphologyCategories();
+	/** Morphological categories of the stems */
+	private static MorphologyCategories stemCategories = new MorphologyCategories();
+	/** Morphological categories of the suffixes */
+	private static MorphologyCategories suffixCategories = new MorphologyCategories();
+	/** The compatible prefix/suffix combinations, with the stem categories compatible with each */
+	private static AffixFrames frames = null;
+	/** The stem groups compatible with each suffix group, for the stem/suffix pairs met so far, or <CODE>null</CODE> if disabled */
+	private static JoinMemo stemSuffixMemo = null;
+	/** The checksum of the text resources the dictionaries have been built from. */
+	private static long sourceChecksum = -1;
 	
 	/** Private constructor to avoid multiple instanciations. */
 	private InMemoryDictionaryHandler() {
 		System.out.println("Initializing in-memory dictionary handler...");
-		// load 3 lexicons
-		loadDictionary(prefixes, "dictPrefixes", this.getClass().getResourceAsStream("dictionaries/dictPrefixes"));
-		loadDictionary(stems, "dictStems", this.getClass().getResourceAsStream("dictionaries/dictStems"));
-		loadDictionary(suffixes, "dictSuffixes", this.getClass().getResourceAsStream("dictionaries/dictSuffixes"));
-		//load 3 compatibility tables
-		loadCompatibilityTable(hash_AB, "tableAB", this.getClass().getResourceAsStream("dictionaries/tableAB"));
-		loadCompatibilityTable(hash_AC, "tableAC", this.getClass().getResourceAsStream("dictionaries/tableAC"));
-		loadCompatibilityTable(hash_BC, "tableBC", this.getClass().getResourceAsStream("dictionaries/tableBC"));
+		//the compatibility tables are only needed to build the matrices
+		HashSet hash_AB = new HashSet(1648);
+		HashSet hash_AC = new HashSet(598);
+		HashSet hash_BC = new HashSet(1285);
+		// a compiled snapshot is much faster to load than the text dictionaries
+		if (!loadSnapshot(hash_AB, hash_AC, hash_BC)) loadTextDictionaries(hash_AB, hash_AC, hash_BC);
+		MorphologyCategories.Matrix matrix_AB = MorphologyCategories.buildMatrix(hash_AB, prefixCategories, stemCategories);
+		MorphologyCategories.Matrix matrix_AC = MorphologyCategories.buildMatrix(hash_AC, prefixCategories, suffixCategories);
+		MorphologyCategories.Matrix matrix_BC = MorphologyCategories.buildMatrix(hash_BC, stemCategories, suffixCategories);
+		System.out.println(prefixCategories.size() + " + " + stemCategories.size() + " + " + suffixCategories.size() + " morphological categories");
+		frames = new AffixFrames(prefixes, suffixes, stemCategories.size(), matrix_AB, matrix_AC, matrix_BC);
+		System.out.println("Affix frames : " + frames.size() + " compatible prefix/suffix pairs");
+		int memoSize = Integer.getInteger(AraMorph.JOIN_MEMO_PROPERTY, JoinMemo.DEFAULT_CAPACITY).intValue();
+		if (memoSize > 0) stemSuffixMemo = new JoinMemo(memoSize);
+		System.out.println("Stems automaton : " + stemAutomaton.getStateCount() + " states, " + stemAutomaton.getTransitionCount() + " transitions");
+		//the affixes are too few to be worth a place in the snapshot
+		prefixAutomaton = new KeyAutomaton(prefixes.keys());
+		suffixAutomaton = KeyAutomaton.buildReversed(suffixes.keys());
+		normalizedPrefixAutomaton = new KeyAutomaton(SpellingNormalizer.normalizedKeys(prefixes.keys()));
+		normalizedSuffixAutomaton = KeyAutomaton.buildReversed(SpellingNormalizer.normalizedKeys(suffixes.keys()));
+		bounds = new SegmentationBounds(prefixes, stems, suffixes);
+		System.out.println("Segmentation bounds : " + bounds);
 		handler = this;
 		System.out.println("... done.");
 	};
 	
+	/** Loads the 3 lexicons and the 3 compatibility tables from the text resources, then builds the automata of the stems.
+	 * @param hash_AB Where to add the compatible prefix-stem combinations
+	 * @param hash_AC Where to add the compatible prefix-suffix combinations
+	 * @param hash_BC Where to add the compatible stem-suffix combinations
+	 */
+	static void loadTextDictionaries(HashSet hash_AB, HashSet hash_AC, HashSet hash_BC) {
+		if (Boolean.getBoolean(MAPPED_PROPERTY) || Boolean.getBoolean(LAZY_PROPERTY)) System.out.println("No dictionary snapshot : all the stems will be loaded");
+		MultiHashMap prefixesMap = new MultiHashMap(78);
+		MultiHashMap stemsMap = new MultiHashMap(47261);
+		MultiHashMap suffixesMap = new MultiHashMap(206);
+		TextDictionaryLoader.load(prefixesMap, stemsMap, suffixesMap, hash_AB, hash_AC, hash_BC);
+		sourceChecksum = DictionarySnapshot.computeSourceChecksum();
+		prefixes = CompactLexicon.build(new MapLexicon(prefixesMap), prefixCategories);
+		stems = CompactLexicon.build(new MapLexicon(stemsMap), stemCategories);
+		suffixes = CompactLexicon.build(new MapLexicon(suffixesMap), suffixCategories);
+		stemAutomaton = new KeyAutomaton(stems.keys());
+		normalizedStemAutomaton = new KeyAutomaton(SpellingNormalizer.normalizedKeys(stems.keys()));
+	}
+	
+	/** Loads the 3 lexicons, the 3 compatibility tables and the automata of the stems from the compiled snapshot, if any.
+	 * @param hash_AB Where to add the compatible prefix-stem combinations
+	 * @param hash_AC Where to add the compatible prefix-suffix combinations
+	 * @param hash_BC Where to add the compatible stem-suffix combinations
+	 * @return Whether or not a valid snapshot has been loaded. If not, the dictionaries are left empty
+	 */
+	private static boolean loadSnapshot(HashSet hash_AB, HashSet hash_AC, HashSet hash_BC) {
+		ByteBuffer buffer = DictionarySnapshot.open();
+		if (buffer == null) return false;
+		int mode = DictionarySnapshot.EAGER;
+		if (Boolean.getBoolean(MAPPED_PROPERTY)) {
+			if (buffer.isDirect()) mode = DictionarySnapshot.MAPPED;
+			else System.out.println("The dictionary snapshot is not a file and can not be mapped : the stems will be loaded in the heap");
+		}
+		else if (Boolean.getBoolean(LAZY_PROPERTY)) mode = DictionarySnapshot.LAZY;
+		System.out.print("Loading dictionary snapshot : " + DictionarySnapshot.getName() + " ");
+		sourceChecksum = DictionarySnapshot.getSourceChecksum(buffer);
+		//prefixes and suffixes are small and looked up very often
+		prefixes = DictionarySnapshot.readLexicon(buffer, DictionarySnapshot.EAGER, prefixCategories);
+		stems = DictionarySnapshot.readLexicon(buffer, mode, stemCategories);
+		suffixes = DictionarySnapshot.readLexicon(buffer, DictionarySnapshot.EAGER, suffixCategories);
+		DictionarySnapshot.readCompatibilityTable(buffer, hash_AB);
+		DictionarySnapshot.readCompatibilityTable(buffer, hash_AC);
+		DictionarySnapshot.readCompatibilityTable(buffer, hash_BC);
+		stemAutomaton = DictionarySnapshot.readAutomaton(buffer);
+		normalizedStemAutomaton = DictionarySnapshot.readAutomaton(buffer);
+		System.out.println();
+		System.out.print(prefixes.size() + " prefixes, " + stems.size() + " stems, " + suffixes.size() + " suffixes");
+		if (mode == DictionarySnapshot.LAZY) System.out.println(" (stems will be loaded on first use, in " + ((ShardedLexicon)stems).getShardCount() + " shards)");
+		else if (mode == DictionarySnapshot.MAPPED) System.out.println(" (stems are used in place, in the mapped snapshot)");
+		else System.out.println();
+		System.out.println(hash_AB.size() + " + " + hash_AC.size() + " + " + hash_BC.size() + " compatibility entries");
+		return true;
+	}
+	
+	/** Writes the currently loaded dictionaries as a compiled snapshot.
+	 * @param os The stream
+	 * @param hash_AB The compatible prefix-stem combinations
+	 * @param hash_AC The compatible prefix-suffix combinations
+	 * @param hash_BC The compatible stem-suffix combinations
+	 * @throws IOException If a problem occurs when writing the snapshot
+	 */
+	static void saveSnapshot(OutputStream os, HashSet hash_AB, HashSet hash_AC, HashSet hash_BC) throws IOException {
+		DictionarySnapshot.write(os, DictionarySnapshot.computeSourceChecksum(), prefixes, stems, suffixes, hash_AB, hash_AC, hash_BC, stemAutomaton, normalizedStemAutomaton);
+	}
+	
+	/** Returns the checksum of the text resources the dictionaries have been built from.
+	 * @return The checksum, as computed by {@link DictionarySnapshot#computeSourceChecksum()}
+	 */
+	static long getSourceChecksum() {
+		return sourceChecksum;
+	}
+	
 	/** Returns a unique instance of the handler.
 	 * @return The instance
 	 */
@@ -87,12 +186,93 @@ class InMemoryDictionaryHandler {
 		else return handler;
 	}
 	
+	/** Returns whether or not the dictionaries are loaded. Unlike {@link #getHandler()}, never blocks.
+	 * @return The loading status
+	 */
+	static boolean isLoaded() {
+		return handler != null;
+	}
+	
+	/** Returns the number of stem shards loaded so far.
+	 * @return The number of loaded shards or <CODE>-1</CODE> if the stems are not loaded on first use
+	 */
+	static int getLoadedStemShards() {
+		if (stems instanceof ShardedLexicon) return ((ShardedLexicon)stems).getLoadedShardCount();
+		return -1;
+	}
+	
+	/** Returns the number of stem shards.
+	 * @return The number of shards or <CODE>-1</CODE> if the stems are not loaded on first use
+	 */
+	static int getStemShards() {
+		if (stems instanceof ShardedLexicon) return ((ShardedLexicon)stems).getShardCount();
+		return -1;
+	}
+	
 	/** Whether or not the prefix is in the dictionary.
 	 * @param translitered The prefix
 	 * @return The result
 	 */
 	protected static boolean hasPrefix(String translitered) {
-		return prefixes.containsKey(translitered);
+		return prefixes.hasKey(translitered);
+	}
+	
+	/** Returns the lengths of the prefixes, stems and suffixes, which bound the segmentations of a word.
+	 * @return The bounds
+	 */
+	protected static SegmentationBounds getSegmentationBounds() {
+		return bounds;
+	}
+	
+	/** Returns the compatible prefix/suffix combinations.
+	 * @return The frames
+	 */
+	protected static AffixFrames getAffixFrames() {
+		return frames;
+	}
+	
+	/** Returns the groups of a stem that are compatible with each group of a suffix, from the memo if possible.
+	 * The join only depends on the dictionaries : the memo is shared by all the analyzers.
+	 * @param stem The index of the stem
+	 * @param suffix The index of the suffix
+	 * @param stemGroups The groups of the stem
+	 * @param suffixGroups The groups of the suffix
+	 * @return For each suffix group, the compatible stem groups by ascending order
+	 */
+	protected int[][] joinStemAndSuffix(int stem, int suffix, EntryGroups stemGroups, EntryGroups suffixGroups) {
+		int[][] join = null;
+		if (stemSuffixMemo != null) join = (int[][])stemSuffixMemo.get(stem, suffix);
+		if (join != null) return join;
+		join = new int[suffixGroups.size()][];
+		int[] compatible = new int[stemGroups.size()];
+		for (int c = 0 ; c < join.length ; c++) {
+			int count = 0;
+			for (int b = 0 ; b < stemGroups.size() ; b++) {
+				if (frames.acceptsSuffix(stemGroups.getCategory(b), suffixGroups.getCategory(c))) compatible[count++] = b;
+			}
+			join[c] = new int[count];
+			System.arraycopy(compatible, 0, join[c], 0, count);
+		}
+		if (stemSuffixMemo != null) stemSuffixMemo.put(stem, suffix, join);
+		return join;
+	}
+	
+	/** Describes the counters of the memo of the stem/suffix joins.
+	 * @return The description or <CODE>null</CODE> if the memo is disabled
+	 */
+	static String getJoinStatistics() {
+		if (stemSuffixMemo == null) return null;
+		return "Stem/suffix join memo : " + stemSuffixMemo.getStatistics();
+	}
+	
+	/** Finds every prefix of a word, in a single walk.
+	 * @param translitered The word
+	 * @param ends Where to store the end (exclusive) of each prefix found. Its length must be greater than the length of the word
+	 * @param indexes Where to store the index of each prefix found, as expected by {@link #getPrefixGroups(int)}
+	 * @return The number of prefixes found, by ascending length
+	 */
+	protected static int findPrefixes(String translitered, int[] ends, int[] indexes) {
+		return prefixAutomaton.walk(translitered, 0, ends, indexes);
 	}
 	
 	/** Returns an iterator on the solutions for the given prefix.
@@ -100,8 +280,9 @@ class InMemoryDictionaryHandler {
 	 * @return The iterator
 	 */
 	protected Iterator getPrefixIterator(String translitered) {
-		if (!prefixes.containsKey(translitered)) return null;
-		else return ((Collection)prefixes.get(translitered)).iterator();
+		Collection entries = prefixes.getEntries(translitered);
+		if (entries == null) return null;
+		else return entries.iterator();
 	}
 	
 	/** Whether or not the stem is in the dictionary.
@@ -109,7 +290,7 @@ class InMemoryDictionaryHandler {
 	 * @return The result
 	 */
 	protected static boolean hasStem(String translitered) {
-		return stems.containsKey(translitered);
+		return stems.hasKey(translitered);
 	}
 	
 	/** Returns an iterator on the solutions for the given stem.
@@ -117,8 +298,9 @@ class InMemoryDictionaryHandler {
 	 * @return The iterator
 	 */
 	protected Iterator getStemIterator(String translitered) {
-		if (!stems.containsKey(translitered)) return null;
-		else return ((Collection)stems.get(translitered)).iterator();
+		Collection entries = stems.getEntries(translitered);
+		if (entries == null) return null;
+		else return entries.iterator();
 	}
 	
 	/** Whether or not the suffix is in the dictionary.
@@ -126,7 +308,17 @@ class InMemoryDictionaryHandler {
 	 * @return The result
 	 */
 	protected static boolean hasSuffix(String translitered) {
-		return suffixes.containsKey(translitered);
+		return suffixes.hasKey(translitered);
+	}
+	
+	/** Finds every suffix of a word, in a single walk from its end.
+	 * @param translitered The word
+	 * @param starts Where to store the start of each suffix found. Its length must be greater than the length of the word
+	 * @param indexes Where to store the index of each suffix found, as expected by {@link #getSuffixGroups(int)}
+	 * @return The number of suffixes found, by ascending length
+	 */
+	protected static int findSuffixes(String translitered, int[] starts, int[] indexes) {
+		return suffixAutomaton.walkBackwards(translitered, translitered.length(), starts, indexes);
 	}
 	
 	/** Returns an iterator on the solutions for the given suffix.
@@ -134,234 +326,100 @@ class InMemoryDictionaryHandler {
 	 * @return The iterator
 	 */
 	protected Iterator getSuffixIterator(String translitered) {
-		if (!suffixes.containsKey(translitered)) return null;
-		else return ((Collection)suffixes.get(translitered)).iterator();
+		Collection entries = suffixes.getEntries(translitered);
+		if (entries == null) return null;
+		else return entries.iterator();
 	}
 	
-	/** Whether or not the prefix/stem combination is possible.
-	 * @param AB The prefix and stem combination.
-	 * @return The result
+	/** Returns the entries for the given prefix, grouped by category.
+	 * @param translitered The prefix
+	 * @return The groups or <CODE>null</CODE> if the prefix is unknown
 	 */
-	protected static boolean hasAB(String A, String B) {
-		return hash_AB.contains(A + " " + B);
+	protected EntryGroups getPrefixGroups(String translitered) {
+		return prefixes.getGroups(translitered);
 	}
 	
-	/** Whether or not the prefix/suffix combination is possible.
-	 * @param AC The prefix and suffix combination.
-	 * @return The result
+	/** Returns the entries for a prefix found by {@link #findPrefixes(String, int[], int[])}, grouped by category.
+	 * @param index The index of the prefix
+	 * @return The groups
 	 */
-	protected static boolean hasAC(String A, String C) {
-		return hash_AC.contains(A + " " + C);
+	protected EntryGroups getPrefixGroups(int index) {
+		return prefixes.getGroups(index);
 	}
 	
-	/** Whether or not the stem/suffix combination is possible.
-	 * @param BC The stem and suffix combination.
-	 * @return The result
+	/** Returns the entries for the given stem, grouped by category.
+	 * @param translitered The stem
+	 * @return The groups or <CODE>null</CODE> if the stem is unknown
 	 */
-	protected static boolean hasBC(String B, String C) {
-		return hash_BC.contains(B + " " + C);
+	protected EntryGroups getStemGroups(String translitered) {
+		return stems.getGroups(translitered);
 	}
 	
-	/** Loads a dictionary into a <CODE>Set</CODE> where the <PRE>key</PRE> is entry and its <PRE>value</PRE> is a
-	 * <CODE>List</CODE> (each entry can have multiple values)
-	 * @param set The set
-	 * @param name A human-readable name
-	 * @param is The stream
-	 * @throws RuntimeException If a problem occurs when reading the dictionary
+	/** Finds every stem starting at a given position of a word, in a single walk.
+	 * @param translitered The word
+	 * @param start The position
+	 * @param ends Where to store the end (exclusive) of each stem found. Its length must be greater than the remaining length of the word
+	 * @param indexes Where to store the index of each stem found, as expected by {@link #getStemGroups(int)}
+	 * @return The number of stems found, by ascending length
 	 */
-	private void loadDictionary(Map set, String name, InputStream is) throws RuntimeException { //TODO : should be static
-		HashSet lemmas = new HashSet();
-		int forms = 0;
-		String lemmaID = "";
-		System.out.print("Loading dictionary : " + name + " ");
-		try {
-			LineNumberReader IN = new LineNumberReader(new InputStreamReader(is,"ISO8859_1"));
-			String line = null;
-			while ((line = IN.readLine()) != null) {
-				if ((IN.getLineNumber() % 1000) == 1) System.out.print(".");
-				// new lemma
-				if (line.startsWith(";; ")) {
-					lemmaID = line.substring(3);
-					// lemmaID's must be unique
-					if (lemmas.contains(lemmaID))
-						throw new RuntimeException("Lemma " + lemmaID + "in " + name + " (line " + IN.getLineNumber() + ") isn't unique");
-					lemmas.add(lemmaID);
-				}
-				// comment
-				else if (line.startsWith(";")) {}
-				else {
-					String split[] = line.split("\t",-1); //-1 to avoid triming of trail values
-					
-					//a little error-checking won't hurt :
-					if (split.length != 4) {
-						throw new RuntimeException("Entry in " + name + " (line " + IN.getLineNumber() + ") doesn't have 4 fields (3 tabs)");
-					}
-					String entry = split[0]; // get the entry for use as key
-					String vocalization = split[1];
-					String morphology = split[2];
-					String glossPOS = split[3];
-					
-					String gloss;
-					String POS;
-					
-					Pattern p;
-					Matcher m;
-					
-					// two ways to get the POS info:
-					// (1) explicitly, by extracting it from the gloss field:
-					p = Pattern.compile(".*" + "<pos>(.+?)</pos>" + ".*");
-					m = p.matcher(glossPOS);
-					if (m.matches()) {
-						POS = m.group(1); //extract POS from glossPOS
-						gloss = glossPOS; //we clean up the gloss later (see below)
-					}
-					// (2) by deduction: use the morphology (and sometimes the voc and gloss) to deduce the appropriate POS
-					else {
-						// we need the gloss to guess proper names
-						gloss = glossPOS; 
-						// null prefix or suffix
-						if (morphology.matches("^(Pref-0|Suff-0)$")) { 
-							POS = "";
-						}
-						else if (morphology.matches("^F" + ".*")) {
-							POS = vocalization + "/FUNC_WORD";
-						}
-						else if (morphology.matches("^IV" + ".*")) {
-							POS = vocalization + "/VERB_IMPERFECT";
-						}
-						else if (morphology.matches("^PV" + ".*")) {
-							POS = vocalization + "/VERB_PERFECT";
-						}
-						else if (morphology.matches("^CV" + ".*")) {
-							POS = vocalization + "/VERB_IMPERATIVE";
-						}						
-						else if (morphology.matches("^N" + ".*")) {
-							// educated guess (99% correct)
-							if (gloss.matches("^[A-Z]" + ".*")) {
-								POS = vocalization + "/NOUN_PROP";
-							}
-							// (was NOUN_ADJ: some of these are really ADJ's and need to be tagged manually)
-							else if (vocalization.matches(".*" + "iy~$")) { 
-								POS = vocalization + "/NOUN";
-							}
-							else 
-								POS = vocalization + "/NOUN";
-						}
-						else {
-							throw new RuntimeException("No POS can be deduced in " + name + " (line " + IN.getLineNumber() + ")");
-						}
-					}
-					
-					// clean up the gloss: remove POS info and extra space, and convert upper-ASCII  to lower (it doesn't convert well to UTF-8)
-					gloss = gloss.replaceFirst("<pos>.+?</pos>","");
-					gloss = gloss.trim();
-					//TODO : we definitely need a translate() method in the java packages !
-					gloss = gloss.replaceAll(";","/"); //TODO : is it necessary ?
-					gloss = gloss.replaceAll("","A");
-					gloss = gloss.replaceAll("","A");
-					gloss = gloss.replaceAll("","A");
-					gloss = gloss.replaceAll("","A");
-					gloss = gloss.replaceAll("","A");
-					gloss = gloss.replaceAll("","A");
-					gloss = gloss.replaceAll("","C");
-					gloss = gloss.replaceAll("","E");
-					gloss = gloss.replaceAll("","E");
-					gloss = gloss.replaceAll("","E");
-					gloss = gloss.replaceAll("","E");
-					gloss = gloss.replaceAll("","I");
-					gloss = gloss.replaceAll("","I");
-					gloss = gloss.replaceAll("","I");
-					gloss = gloss.replaceAll("","I");
-					gloss = gloss.replaceAll("","N");
-					gloss = gloss.replaceAll("","O");
-					gloss = gloss.replaceAll("","O");
-					gloss = gloss.replaceAll("","O");
-					gloss = gloss.replaceAll("","O");
-					gloss = gloss.replaceAll("","O");
-					gloss = gloss.replaceAll("","U");
-					gloss = gloss.replaceAll("","U");
-					gloss = gloss.replaceAll("","U");
-					gloss = gloss.replaceAll("","U");
-					gloss = gloss.replaceAll("","a");
-					gloss = gloss.replaceAll("","a");
-					gloss = gloss.replaceAll("","a");
-					gloss = gloss.replaceAll("","a");
-					gloss = gloss.replaceAll("","a");
-					gloss = gloss.replaceAll("","a");
-					gloss = gloss.replaceAll("","c");
-					gloss = gloss.replaceAll("","e");
-					gloss = gloss.replaceAll("","e");
-					gloss = gloss.replaceAll("","e");
-					gloss = gloss.replaceAll("","e");
-					gloss = gloss.replaceAll("","i");
-					gloss = gloss.replaceAll("","i");
-					gloss = gloss.replaceAll("","i");
-					gloss = gloss.replaceAll("","i");
-					gloss = gloss.replaceAll("","n");
-					gloss = gloss.replaceAll("","o");
-					gloss = gloss.replaceAll("","o");
-					gloss = gloss.replaceAll("","o");
-					gloss = gloss.replaceAll("","o");
-					gloss = gloss.replaceAll("","o");
-					gloss = gloss.replaceAll("","u");
-					gloss = gloss.replaceAll("","u");
-					gloss = gloss.replaceAll("","u");
-					gloss = gloss.replaceAll("","u");
-					gloss = gloss.replaceAll("","AE");
-					gloss = gloss.replaceAll("","Sh");
-					gloss = gloss.replaceAll("","Zh");
-					gloss = gloss.replaceAll("","ss");
-					gloss = gloss.replaceAll("","ae");
-					gloss = gloss.replaceAll("","sh");
-					gloss = gloss.replaceAll("","zh");
-					// note that although we read 4 fields from the dict we now save 5 fields in the hash table
-					// because the info in last field, glossPOS, was split into two: gloss and POS
-					DictionaryEntry de = new DictionaryEntry(entry, lemmaID, vocalization, morphology, gloss, POS);
-					if (set.containsKey(entry)) {
-						((Collection)set.get(entry)).add(de);
-					}
-					else set.put(entry, de);
-					forms++;
-				}
-			}
-			IN.close();
-			System.out.println();
-			if (!"".equals(lemmaID)) System.out.print(lemmas.size() + " lemmas and ");
-			System.out.println(set.size() + " entries totalizing " + forms + " forms");
-		}
-		catch (IOException e) {
-			throw new RuntimeException("Can not open : " + name);
-		}
+	protected int findStems(String translitered, int start, int[] ends, int[] indexes) {
+		return stemAutomaton.walk(translitered, start, ends, indexes);
 	}
 	
-	/** Loads a compatibility table into a <CODE>Set</CODE>.
-	 * @param set The set
-	 * @param name A human-readable name
-	 * @param is The stream
-	 * @throws RuntimeException If a problem occurs when reading the compatibility table
+	/** Finds every {@link SpellingNormalizer normalized} prefix of a normalized word, in a single walk.
+	 * @param normalized The normalized word
+	 * @param ends Where to store the end (exclusive) of each prefix found. Its length must be greater than the length of the word
+	 * @param indexes Where to store the rank of each prefix found among the normalized ones
+	 * @return The number of prefixes found, by ascending length
 	 */
-	private static void loadCompatibilityTable(Set set, String name, InputStream is) throws RuntimeException {
-		System.out.print("Loading compatibility table : " + name + " ");
-		try {
-			LineNumberReader IN = new LineNumberReader(new InputStreamReader(is,"ISO8859_1"));
-			String line = null;
-			while ((line = IN.readLine()) != null) {
-				if ((IN.getLineNumber() % 1000) == 1) System.out.print(".");
-				if (!line.startsWith(";")) { //Ignore comments
-					line = line.trim();
-					line = line.replaceAll("\\s+", " ");
-					set.add(line);
-				}
-			}
-			IN.close();
-			System.out.println();
-			System.out.println(set.size() + " entries");
-		}
-		catch (IOException e) {
-			throw new RuntimeException("Can not open : " + name);
-		}
+	protected static int findNormalizedPrefixes(String normalized, int[] ends, int[] indexes) {
+		return normalizedPrefixAutomaton.walk(normalized, 0, ends, indexes);
+	}
+	
+	/** Finds every {@link SpellingNormalizer normalized} stem starting at a given position of a normalized word, in a single walk.
+	 * @param normalized The normalized word
+	 * @param start The position
+	 * @param ends Where to store the end (exclusive) of each stem found. Its length must be greater than the remaining length of the word
+	 * @param indexes Where to store the rank of each stem found among the normalized ones
+	 * @return The number of stems found, by ascending length
+	 */
+	protected int findNormalizedStems(String normalized, int start, int[] ends, int[] indexes) {
+		return normalizedStemAutomaton.walk(normalized, start, ends, indexes);
 	}
 	
+	/** Finds every {@link SpellingNormalizer normalized} suffix of a normalized word, in a single walk from its end.
+	 * @param normalized The normalized word
+	 * @param starts Where to store the start of each suffix found. Its length must be greater than the length of the word
+	 * @param indexes Where to store the index of each suffix found among the normalized ones
+	 * @return The number of suffixes found, by ascending length
+	 */
+	protected static int findNormalizedSuffixes(String normalized, int[] starts, int[] indexes) {
+		return normalizedSuffixAutomaton.walkBackwards(normalized, normalized.length(), starts, indexes);
+	}
+	
+	/** Returns the entries for a stem found by {@link #findStems(String, int, int[], int[])}, grouped by category.
+	 * @param index The index of the stem
+	 * @return The groups
+	 */
+	protected EntryGroups getStemGroups(int index) {
+		return stems.getGroups(index);
+	}
+	
+	/** Returns the entries for the given suffix, grouped by category.
+	 * @param translitered The suffix
+	 * @return The groups or <CODE>null</CODE> if the suffix is unknown
+	 */
+	protected EntryGroups getSuffixGroups(String translitered) {
+		return suffixes.getGroups(translitered);
+	}
+	
+	/** Returns the entries for a suffix found by {@link #findSuffixes(String, int[], int[])}, grouped by category.
+	 * @param index The index of the suffix
+	 * @return The groups
+	 */
+	protected EntryGroups getSuffixGroups(int index) {
+		return suffixes.getGroups(index);
+	}
 	
 }
 
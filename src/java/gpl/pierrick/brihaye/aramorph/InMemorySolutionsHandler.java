@@ -26,10 +26,18 @@ http://www.fsf.org/copyleft/gpl.html
 
 package gpl.pierrick.brihaye.aramorph;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 
 /** An in-memory handler for managing solutions found by the morphological analyzer.
  * @see org.apache.lucene.analysis.ar.aramorph.AraMorph
@@ -40,22 +48,90 @@ class InMemorySolutionsHandler {
 	/** The unique instance of this handler. */
 	private static InMemorySolutionsHandler handler = null;
 	
-	//Cache (TODO : consider LRU maps)
+	/** The system property giving the maximum weight of each cache. */
+	static final String CACHE_SIZE_PROPERTY = "aramorph.solutions.cache.size";
+	/** The system property giving how the entries of the caches are weighed : <CODE>entries</CODE> (the default) makes
+	 * each word weigh 1, <CODE>solutions</CODE> makes it weigh its number of solutions or alternative spellings, which is
+	 * a rough estimate of the memory it holds.
+	 */
+	static final String CACHE_WEIGHER_PROPERTY = "aramorph.solutions.cache.weigher";
+	/** The default maximum weight of each cache. */
+	static final int DEFAULT_CACHE_SIZE = 32768;
+	/** The system property giving the number of slots of the per-thread caches of solutions. <CODE>0</CODE> disables them. */
+	static final String LOCAL_CACHE_SIZE_PROPERTY = "aramorph.solutions.cache.local.size";
+	/** The default number of slots of the per-thread caches of solutions. */
+	static final int DEFAULT_LOCAL_CACHE_SIZE = 1024;
+	/** The system property giving the maximum number of words of the cache of the words without solution. */
+	static final String NEGATIVE_CACHE_SIZE_PROPERTY = "aramorph.solutions.cache.negative.size";
+	/** The default maximum number of words of the cache of the words without solution. */
+	static final int DEFAULT_NEGATIVE_CACHE_SIZE = 65536;
+	
+	/** Whether or not the entries are weighed by their number of values. */
+	private static boolean weighValues = "solutions".equals(System.getProperty(CACHE_WEIGHER_PROPERTY, "entries"));
+	
+	//Bounded caches : a word that has been evicted has to be analyzed again. Words are packed into long keys when possible
 	
 	/** Solutions for analyzed words.
 	 * <PRE>key</PRE> = word
 	 * <PRE>value</PRE> = set of solutions (can be empty)
 	 */
-	private static Hashtable solutions = new Hashtable();
+	private static BoundedCache solutions = new BoundedCache(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE).intValue());
 	/** Alternative spellings for analyzed words.
 	 * <PRE>key</PRE> = word
 	 * <PRE>value</PRE> = set of alternative spellings (can be empty)
 	 */
-	private static Hashtable alternativeSpellings = new Hashtable();
+	private static BoundedCache alternativeSpellings = new BoundedCache(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE).intValue());
+	/** Analyzed words that have no solution, even through their alternative spellings. They are shared by all the analyzers,
+	 * so that out-of-vocabulary words are not segmented again by each of them.
+	 * <PRE>key</PRE> = word
+	 * <PRE>value</PRE> = <CODE>Boolean.TRUE</CODE>
+	 */
+	private static BoundedCache noSolutions = new BoundedCache(Integer.getInteger(NEGATIVE_CACHE_SIZE_PROPERTY, DEFAULT_NEGATIVE_CACHE_SIZE).intValue());
+	
+	/** The number of slots of the per-thread caches of solutions. */
+	private static int localCacheSize = Integer.getInteger(LOCAL_CACHE_SIZE_PROPERTY, DEFAULT_LOCAL_CACHE_SIZE).intValue();
+	/** The counters of the per-thread caches of the threads that may still be alive.
+	 * Each thread is followed by its counters : <CODE>WeakReference</CODE> on the thread, then <CODE>ThreadCache.Counters</CODE>
+	 */
+	private static ArrayList localCounters = new ArrayList();
+	/** The hits of the per-thread caches of the threads that have ended. Guarded by {@link #localCounters}. */
+	private static long endedLocalHits = 0;
+	/** The misses of the per-thread caches of the threads that have ended. Guarded by {@link #localCounters}. */
+	private static long endedLocalMisses = 0;
+	/** Solutions for the words recently analyzed by the current thread : they are looked up before {@link #solutions}. */
+	private static ThreadLocal localSolutions = new ThreadLocal() {
+		protected Object initialValue() {
+			ThreadCache cache = new ThreadCache(localCacheSize);
+			synchronized (localCounters) {
+				pruneLocalCounters();
+				localCounters.add(new WeakReference(Thread.currentThread()));
+				localCounters.add(cache.getCounters());
+			}
+			return cache;
+		}
+	};
+	
+	/** The checksum of the dictionaries the solutions are built from. */
+	private static long dictionaryChecksum = -1;
+	/** The solutions of the words analyzed by the previous runs, or <CODE>null</CODE> if there are none. */
+	private static SolutionsFile solutionsFile = null;
 	
 	/** Private constructor to avoid multiple instanciations. */
 	private InMemorySolutionsHandler() {
 		System.out.println("Initializing in-memory solutions handler...");
+		String path = System.getProperty(SolutionsFile.FILE_PROPERTY);
+		if (path != null) {
+			//the references of the solutions point to the entries of the dictionaries
+			InMemoryDictionaryHandler.getHandler();
+			dictionaryChecksum = InMemoryDictionaryHandler.getSourceChecksum();
+			solutionsFile = SolutionsFile.open(new File(path), dictionaryChecksum);
+			if (solutionsFile != null) System.out.println("Solutions file : " + path + ", " + solutionsFile.size() + " words");
+			Runtime.getRuntime().addShutdownHook(new Thread("AraMorph solutions file") {
+				public void run() {
+					saveSolutionsFile();
+				}
+			});
+		}
 		handler = this;
 		System.out.println("... done.");
 	};
@@ -68,12 +144,53 @@ class InMemorySolutionsHandler {
 		else return handler;
 	}
 	
+	/** Adds the counters of the threads that have ended to the totals and forgets them, so that thread pools
+	 * that renew their threads do not make the list grow. The caller must hold the lock of {@link #localCounters}.
+	 */
+	private static void pruneLocalCounters() {
+		int live = 0;
+		for (int i = 0 ; i < localCounters.size() ; i += 2) {
+			Thread thread = (Thread)((WeakReference)localCounters.get(i)).get();
+			ThreadCache.Counters counters = (ThreadCache.Counters)localCounters.get(i + 1);
+			//the counters of a thread that has ended are up to date
+			if (thread == null || !thread.isAlive()) {
+				endedLocalHits += counters.getHits();
+				endedLocalMisses += counters.getMisses();
+			}
+			else {
+				localCounters.set(live++, localCounters.get(i));
+				localCounters.set(live++, counters);
+			}
+		}
+		while (localCounters.size() > live) localCounters.remove(localCounters.size() - 1);
+	}
+	
+	/** Returns the cache of the current thread, if the word can be cached there.
+	 * @param packed The packed word
+	 * @return The cache or <CODE>null</CODE>
+	 */
+	private static ThreadCache getLocalCache(long packed) {
+		if (localCacheSize == 0 || packed == PackedWord.OVERFLOW) return null;
+		return (ThreadCache)localSolutions.get();
+	}
+	
+	/** Returns the weight of a set of values in the caches.
+	 * @param values The values
+	 * @return The weight
+	 */
+	private static int weigh(Collection values) {
+		return weighValues ? values.size() : 1;
+	}
+	
 	/** Add solutions for the given word.
 	 * @param translitered The word
 	 * @param sol The solutions
 	 */
-	protected static synchronized void addSolutions(String translitered, HashSet sol) {
-		solutions.put(translitered, sol);
+	protected static void addSolutions(String translitered, HashSet sol) {
+		long packed = PackedWord.pack(translitered);
+		solutions.put(packed, translitered, sol, weigh(sol));
+		ThreadCache local = getLocalCache(packed);
+		if (local != null) local.put(packed, sol);
 	}
 	
 	/** Whether or not the word already gave solutions.
@@ -81,7 +198,23 @@ class InMemorySolutionsHandler {
 	 * @return The result
 	 */
 	protected static boolean hasSolutions(String translitered) {
-		return solutions.containsKey(translitered);
+		return solutions.containsKey(PackedWord.pack(translitered), translitered);
+	}
+	
+	/** Returns the solutions of the given word. The cache of the current thread is looked up before the shared one.
+	 * @param translitered The word
+	 * @return The solutions or <CODE>null</CODE> if they are not cached
+	 */
+	protected static Collection getSolutions(String translitered) {
+		long packed = PackedWord.pack(translitered);
+		ThreadCache local = getLocalCache(packed);
+		if (local != null) {
+			Collection wordSolutions = (Collection)local.get(packed);
+			if (wordSolutions != null) return wordSolutions;
+		}
+		Collection wordSolutions = (Collection)solutions.get(packed, translitered);
+		if (local != null && wordSolutions != null) local.put(packed, wordSolutions);
+		return wordSolutions;
 	}
 	
 	/** Returns an iterator on the solutions of the given word.
@@ -89,16 +222,17 @@ class InMemorySolutionsHandler {
 	 * @return The iterator
 	 */
 	protected static Iterator getSolutionsIterator(String translitered) {
-		if (!solutions.containsKey(translitered)) return null;
-		else return ((Collection)solutions.get(translitered)).iterator();
+		Collection wordSolutions = getSolutions(translitered);
+		if (wordSolutions == null) return null;
+		else return wordSolutions.iterator();
 	}
 	
 	/** Add alternative spellings for the given word.
 	 * @param translitered The word
 	 * @param alt The alternative spellings
 	 */
-	protected static synchronized void addAlternativeSpellings(String translitered, HashSet alt) {
-		alternativeSpellings.put(translitered, alt);
+	protected static void addAlternativeSpellings(String translitered, HashSet alt) {
+		alternativeSpellings.put(PackedWord.pack(translitered), translitered, alt, weigh(alt));
 	}
 	
 	/** Whether or not the word already gave alternative spellings.
@@ -106,7 +240,15 @@ class InMemorySolutionsHandler {
 	 * @return The result
 	 */
 	protected static boolean hasAlternativeSpellings(String translitered) {
-		return alternativeSpellings.containsKey(translitered);
+		return alternativeSpellings.containsKey(PackedWord.pack(translitered), translitered);
+	}
+	
+	/** Returns the alternative spellings of the given word.
+	 * @param translitered The word
+	 * @return The alternative spellings or <CODE>null</CODE> if they are not cached
+	 */
+	protected static Collection getAlternativeSpellings(String translitered) {
+		return (Collection)alternativeSpellings.get(PackedWord.pack(translitered), translitered);
 	}
 	
 	/** Returns an iterator on the alternative spellings of the given word.
@@ -114,8 +256,117 @@ class InMemorySolutionsHandler {
 	 * @return The iterator
 	 */
 	protected static Iterator getAlternativeSpellingsIterator(String translitered) {
-		if (!alternativeSpellings.containsKey(translitered)) return null;
-		return ((Collection)alternativeSpellings.get(translitered)).iterator();
+		Collection wordAlternativeSpellings = getAlternativeSpellings(translitered);
+		if (wordAlternativeSpellings == null) return null;
+		return wordAlternativeSpellings.iterator();
+	}
+	
+	/** Remembers that the given word has no solution, even through its alternative spellings.
+	 * @param translitered The word
+	 */
+	protected static void addNoSolution(String translitered) {
+		noSolutions.put(PackedWord.pack(translitered), translitered, Boolean.TRUE, 1);
+	}
+	
+	/** Whether or not the word is known to have no solution, even through its alternative spellings.
+	 * @param translitered The word
+	 * @return The result
+	 */
+	protected static boolean hasNoSolution(String translitered) {
+		long packed = PackedWord.pack(translitered);
+		if (noSolutions.get(packed, translitered) != null) return true;
+		if (solutionsFile == null) return false;
+		int position = solutionsFile.find(translitered);
+		if (position == -1 || solutionsFile.getCount(position) != 0) return false;
+		noSolutions.put(packed, translitered, Boolean.TRUE, 1);
+		return true;
+	}
+	
+	/** Returns the solutions of the words analyzed by the previous runs.
+	 * @return The file or <CODE>null</CODE> if there is none
+	 */
+	protected static SolutionsFile getSolutionsFile() {
+		return solutionsFile;
+	}
+	
+	/** Writes the solutions of the words analyzed so far, along with those of the previous runs, to the file given by the
+	 * <CODE>aramorph.solutions.cache.file</CODE> property. Only the words that are still cached are written ;
+	 * those whose key can not be packed are not.
+	 * @throws RuntimeException If a problem occurs when writing the file
+	 */
+	protected static synchronized void saveSolutionsFile() throws RuntimeException {
+		String path = System.getProperty(SolutionsFile.FILE_PROPERTY);
+		if (path == null) return;
+		HashMap words = new HashMap();
+		Iterator it = noSolutions.getEntries().keySet().iterator();
+		while (it.hasNext()) {
+			Object key = it.next();
+			if (key instanceof Long) words.put(key, new long[0]);
+		}
+		it = solutions.getEntries().entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry entry = (Map.Entry)it.next();
+			if (!(entry.getKey() instanceof Long)) continue;
+			long[] references = getReferences((Collection)entry.getValue());
+			if (references != null) words.put(entry.getKey(), references);
+		}
+		if (solutionsFile != null) solutionsFile.copyTo(words);
+		try {
+			SolutionsFile.write(new File(path), dictionaryChecksum, words);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Can not write : " + path);
+		}
+		System.out.println("Solutions file : " + path + ", " + words.size() + " words written");
+	}
+	
+	/** Returns the references of a set of solutions, by order of number.
+	 * @param wordSolutions The solutions
+	 * @return The references or <CODE>null</CODE> if one of the solutions can not be referenced
+	 */
+	private static long[] getReferences(Collection wordSolutions) {
+		Solution[] sorted = (Solution[])wordSolutions.toArray(new Solution[wordSolutions.size()]);
+		Arrays.sort(sorted, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return ((Solution)o1).getCnt() - ((Solution)o2).getCnt();
+			}
+		});
+		long[] references = new long[3 * sorted.length];
+		for (int i = 0 ; i < sorted.length ; i++) {
+			if (!sorted[i].hasReferences()) return null;
+			references[3 * i] = sorted[i].prefixReference;
+			references[3 * i + 1] = sorted[i].stemReference;
+			references[3 * i + 2] = sorted[i].suffixReference;
+		}
+		return references;
+	}
+	
+	/** Describes the counters of the caches.
+	 * @return The description
+	 */
+	protected static String getStatistics() {
+		String statistics = "Solutions cache : " + solutions.getStatistics() + "\nAlternative spellings cache : " + alternativeSpellings.getStatistics()
+			+ "\nNo solution cache : " + noSolutions.getStatistics();
+		if (solutionsFile != null) statistics += "\nSolutions file : " + solutionsFile.getStatistics();
+		if (localCacheSize == 0) return statistics;
+		long hits;
+		long misses;
+		int threads;
+		synchronized (localCounters) {
+			pruneLocalCounters();
+			hits = endedLocalHits;
+			misses = endedLocalMisses;
+			threads = localCounters.size() / 2;
+			for (int i = 1 ; i < localCounters.size() ; i += 2) {
+				ThreadCache.Counters counters = (ThreadCache.Counters)localCounters.get(i);
+				hits += counters.getHits();
+				misses += counters.getMisses();
+			}
+		}
+		DecimalFormat df = new DecimalFormat("##.##%");
+		double rate = (hits + misses == 0) ? 0 : (double)hits / (hits + misses);
+		return "Local solutions caches : " + hits + " hits, " + misses + " misses (" + df.format(rate) + ") in "
+			+ threads + " live thread(s) of " + ThreadCache.getSlots(localCacheSize) + " slots\n" + statistics;
 	}
 	
 }
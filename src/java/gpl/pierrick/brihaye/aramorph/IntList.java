@@ -0,0 +1,74 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+/** A growable array of ints, to build the arrays of the lexicons without boxing.
+ * @author Pierrick Brihaye, 2003
+ */
+class IntList {
+	
+	private int[] values = new int[16];
+	private int size = 0;
+	
+	/** Appends a value.
+	 * @param value The value
+	 */
+	void add(int value) {
+		if (size == values.length) {
+			int[] grown = new int[size * 2];
+			System.arraycopy(values, 0, grown, 0, size);
+			values = grown;
+		}
+		values[size++] = value;
+	}
+	
+	/** Returns a value.
+	 * @param index The index of the value
+	 * @return The value
+	 */
+	int get(int index) {
+		if (index >= size) throw new IndexOutOfBoundsException("Index: " + index);
+		return values[index];
+	}
+	
+	/** Returns the number of values.
+	 * @return The number of values
+	 */
+	int size() {
+		return size;
+	}
+	
+	/** Copies the values.
+	 * @return The values
+	 */
+	int[] toArray() {
+		int[] array = new int[size];
+		System.arraycopy(values, 0, array, 0, size);
+		return array;
+	}
+	
+}
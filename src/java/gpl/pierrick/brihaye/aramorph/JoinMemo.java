@@ -0,0 +1,135 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.text.DecimalFormat;
+
+/** A bounded memo of partial join results, keyed by a pair of indexes, e.g. those of a stem and a suffix.
+ * <P>The memo is direct-mapped : each key has a single slot, where it replaces the previous one. Looking a key up
+ * allocates nothing. Hits and misses are counted, so that one can judge whether the memo pays off.</P>
+ * <P>Instances are thread-safe without locking : a slot holds an immutable pair, so that a thread sees either the pair
+ * or an older one, i.e. a miss. The counters are striped.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class JoinMemo {
+	
+	/** The default number of slots. */
+	static final int DEFAULT_CAPACITY = 4096;
+	
+	/** A key and its result. */
+	private static final class Slot {
+		final long key;
+		final Object value;
+		
+		Slot(long key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+	
+	private final Slot[] slots;
+	private final int mask;
+	private final StripedCounter hits = new StripedCounter();
+	private final StripedCounter misses = new StripedCounter();
+	
+	/** Constructs an empty memo.
+	 * @param capacity The number of slots. It is rounded up to a power of 2
+	 */
+	JoinMemo(int capacity) {
+		int slots = 1;
+		while (slots < capacity) slots <<= 1;
+		this.slots = new Slot[slots];
+		mask = slots - 1;
+	}
+	
+	private static long key(int first, int second) {
+		return ((long)first << 32) | (second & 0xFFFFFFFFL);
+	}
+	
+	private int slot(int first, int second) {
+		int h = first * 0x9E3779B1 + second;
+		return (h ^ (h >>> 15)) & mask;
+	}
+	
+	/** Returns the result memorized for a pair of indexes.
+	 * @param first The first index
+	 * @param second The second index
+	 * @return The result or <CODE>null</CODE> if it is not memorized
+	 */
+	Object get(int first, int second) {
+		Slot slot = slots[slot(first, second)];
+		if (slot != null && slot.key == key(first, second)) {
+			hits.increment();
+			return slot.value;
+		}
+		misses.increment();
+		return null;
+	}
+	
+	/** Memorizes the result for a pair of indexes.
+	 * @param first The first index
+	 * @param second The second index
+	 * @param value The result
+	 */
+	void put(int first, int second, Object value) {
+		slots[slot(first, second)] = new Slot(key(first, second), value);
+	}
+	
+	/** Returns the number of results found in the memo.
+	 * @return The number of hits
+	 */
+	long getHits() {
+		return hits.get();
+	}
+	
+	/** Returns the number of results that were not in the memo.
+	 * @return The number of misses
+	 */
+	long getMisses() {
+		return misses.get();
+	}
+	
+	/** Returns the share of the results found in the memo.
+	 * @return The rate or <CODE>0</CODE> if nothing has been looked up
+	 */
+	double getHitRate() {
+		long hits = getHits();
+		long misses = getMisses();
+		if (hits + misses == 0) return 0;
+		return (double)hits / (hits + misses);
+	}
+	
+	/** Describes the counters of the memo.
+	 * @return The description
+	 */
+	String getStatistics() {
+		DecimalFormat df = new DecimalFormat("##.##%");
+		return getHits() + " hits, " + getMisses() + " misses (" + df.format(getHitRate()) + ") in " + slots.length + " slots";
+	}
+	
+}
@@ -0,0 +1,340 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/** A minimal acyclic automaton (aka DAWG) recognizing the keys of a lexicon. Keys sharing prefixes or suffixes
+ * share their states, and a single left-to-right walk from a position of a word reports every key starting there.
+ * <P>Every state knows how many keys it leads to, so that a walk also gives the rank of the keys it recognizes
+ * in ascending order, i.e. their index in a {@link SortedLexicon sorted lexicon}.</P>
+ * <P>The automaton is built in a single pass over the sorted keys, minimizing it as it goes (Daciuk et al., 2000),
+ * then frozen into a few arrays, which can be {@link #write(DataOutputStream) written} in a snapshot and {@link #read(ByteBuffer) read}
+ * back in bulk. It is immutable and can be shared by several threads.</P>
+ * <P>An automaton of {@link #buildReversed(Iterator) reversed keys} walks right-to-left instead, from the end of a word :
+ * it reports every key ending there, e.g. every suffix of the word.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class KeyAutomaton {
+	
+	/** The first transition of each state, followed by the number of transitions. The root is state 0. */
+	private int[] firstTransitions;
+	/** Whether or not each state ends a key. */
+	private boolean[] finals;
+	/** The labels of the transitions, sorted for each state. */
+	private char[] labels;
+	/** The targets of the transitions. */
+	private int[] targets;
+	/** The number of keys lower than those reached through each transition, among those reachable from its state. */
+	private int[] ranks;
+	/** For an automaton of reversed keys, the index of the key of each rank. <CODE>null</CODE> otherwise. */
+	private int[] keyIndexes = null;
+	
+	/** Builds the automaton of some keys.
+	 * @param keys An iterator on the keys, in ascending order and without duplicates
+	 * @throws RuntimeException If the keys are not sorted
+	 */
+	KeyAutomaton(Iterator keys) throws RuntimeException {
+		Builder builder = new Builder();
+		while (keys.hasNext()) builder.add((String)keys.next());
+		builder.freeze(this);
+	}
+	
+	private KeyAutomaton() {
+	}
+	
+	/** Builds the automaton of some keys read right-to-left.
+	 * @param keys An iterator on the keys, in ascending order and without duplicates
+	 * @return The automaton. Its walks report the index of the keys in this order
+	 */
+	static KeyAutomaton buildReversed(Iterator keys) {
+		ArrayList list = new ArrayList();
+		while (keys.hasNext()) list.add(new StringBuffer((String)keys.next()).reverse().toString());
+		final String[] reversed = (String[])list.toArray(new String[list.size()]);
+		Integer[] order = new Integer[reversed.length];
+		for (int k = 0 ; k < order.length ; k++) order[k] = new Integer(k);
+		Arrays.sort(order, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return reversed[((Integer)o1).intValue()].compareTo(reversed[((Integer)o2).intValue()]);
+			}
+		});
+		KeyAutomaton automaton = new KeyAutomaton();
+		Builder builder = new Builder();
+		automaton.keyIndexes = new int[order.length];
+		for (int r = 0 ; r < order.length ; r++) {
+			builder.add(reversed[order[r].intValue()]);
+			automaton.keyIndexes[r] = order[r].intValue();
+		}
+		builder.freeze(automaton);
+		return automaton;
+	}
+	
+	/** Reads an automaton written by {@link #write(DataOutputStream)}.
+	 * @param buffer The buffer, positioned at the start of the automaton
+	 * @return The automaton
+	 */
+	static KeyAutomaton read(ByteBuffer buffer) {
+		KeyAutomaton automaton = new KeyAutomaton();
+		int states = buffer.getInt();
+		int transitions = buffer.getInt();
+		automaton.firstTransitions = new int[states + 1];
+		automaton.finals = new boolean[states];
+		automaton.labels = new char[transitions];
+		automaton.targets = new int[transitions];
+		automaton.ranks = new int[transitions];
+		buffer.asIntBuffer().get(automaton.firstTransitions);
+		buffer.position(buffer.position() + 4 * (states + 1));
+		for (int s = 0 ; s < states ; s++) automaton.finals[s] = (buffer.get() != 0);
+		buffer.asCharBuffer().get(automaton.labels);
+		buffer.position(buffer.position() + 2 * transitions);
+		buffer.asIntBuffer().get(automaton.targets);
+		buffer.position(buffer.position() + 4 * transitions);
+		buffer.asIntBuffer().get(automaton.ranks);
+		buffer.position(buffer.position() + 4 * transitions);
+		return automaton;
+	}
+	
+	/** Writes the automaton.
+	 * @param out The stream
+	 * @throws IOException If a problem occurs when writing the automaton
+	 * @throws RuntimeException If the automaton is one of reversed keys
+	 */
+	void write(DataOutputStream out) throws IOException, RuntimeException {
+		if (keyIndexes != null) throw new RuntimeException("Automata of reversed keys can not be written");
+		out.writeInt(finals.length);
+		out.writeInt(labels.length);
+		for (int s = 0 ; s < firstTransitions.length ; s++) out.writeInt(firstTransitions[s]);
+		for (int s = 0 ; s < finals.length ; s++) out.writeByte(finals[s] ? 1 : 0);
+		for (int t = 0 ; t < labels.length ; t++) out.writeChar(labels[t]);
+		for (int t = 0 ; t < targets.length ; t++) out.writeInt(targets[t]);
+		for (int t = 0 ; t < ranks.length ; t++) out.writeInt(ranks[t]);
+	}
+	
+	/** Walks the automaton along a word.
+	 * @param word The word
+	 * @param start Where the keys should start in the word
+	 * @param ends Where to store the end (exclusive) of each key found. Its length must be greater than the remaining length of the word
+	 * @param indexes Where to store the rank of each key found
+	 * @return The number of keys found, by ascending length. The empty key, if any, comes first
+	 */
+	int walk(String word, int start, int[] ends, int[] indexes) {
+		int found = 0;
+		int state = 0;
+		int rank = 0;
+		if (finals[0]) {
+			ends[found] = start;
+			indexes[found] = 0;
+			found++;
+		}
+		for (int i = start ; i < word.length() ; i++) {
+			int t = findTransition(state, word.charAt(i));
+			if (t == -1) break;
+			rank += ranks[t];
+			state = targets[t];
+			if (finals[state]) {
+				ends[found] = i + 1;
+				indexes[found] = rank;
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/** Walks an automaton of {@link #buildReversed(Iterator) reversed keys} backwards along a word.
+	 * @param word The word
+	 * @param end Where the keys should end (exclusive) in the word
+	 * @param starts Where to store the start of each key found. Its length must be greater than <CODE>end</CODE>
+	 * @param indexes Where to store the index of each key found
+	 * @return The number of keys found, by ascending length. The empty key, if any, comes first
+	 */
+	int walkBackwards(String word, int end, int[] starts, int[] indexes) {
+		int found = 0;
+		int state = 0;
+		int rank = 0;
+		if (finals[0]) {
+			starts[found] = end;
+			indexes[found] = keyIndexes[0];
+			found++;
+		}
+		for (int i = end - 1 ; i >= 0 ; i--) {
+			int t = findTransition(state, word.charAt(i));
+			if (t == -1) break;
+			rank += ranks[t];
+			state = targets[t];
+			if (finals[state]) {
+				starts[found] = i;
+				indexes[found] = keyIndexes[rank];
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	private int findTransition(int state, char c) {
+		int low = firstTransitions[state];
+		int high = firstTransitions[state + 1] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (labels[middle] < c) low = middle + 1;
+			else if (labels[middle] > c) high = middle - 1;
+			else return middle;
+		}
+		return -1;
+	}
+	
+	/** Returns the number of states.
+	 * @return The number of states
+	 */
+	int getStateCount() {
+		return finals.length;
+	}
+	
+	/** Returns the number of transitions.
+	 * @return The number of transitions
+	 */
+	int getTransitionCount() {
+		return labels.length;
+	}
+	
+	/** A state under construction. */
+	private static class State {
+		
+		private boolean isFinal = false;
+		/** The labels and targets of the transitions, in ascending order. */
+		private StringBuffer labels = new StringBuffer(2);
+		private ArrayList targets = new ArrayList(2);
+		/** The number of keys reachable from this state. */
+		private int keys = 0;
+		/** The number of the state, once registered. */
+		private int id = -1;
+		
+		private State getLastChild() {
+			return targets.isEmpty() ? null : (State)targets.get(targets.size() - 1);
+		}
+		
+		/** Returns a description of the state that is identical for equivalent states, whose children are registered. */
+		private String getSignature() {
+			StringBuffer signature = new StringBuffer();
+			signature.append(isFinal ? 'F' : 'N');
+			for (int i = 0 ; i < targets.size() ; i++) {
+				signature.append(labels.charAt(i)).append(((State)targets.get(i)).id).append(',');
+			}
+			return signature.toString();
+		}
+	}
+	
+	/** Builds the automaton from sorted keys. */
+	private static class Builder {
+		
+		private State root = new State();
+		/** The registered states : <PRE>key</PRE> = signature, <PRE>value</PRE> = state */
+		private HashMap register = new HashMap();
+		/** The registered states, by number. */
+		private ArrayList states = new ArrayList();
+		private String previous = null;
+		
+		private void add(String key) {
+			if (previous != null && previous.compareTo(key) >= 0) throw new RuntimeException("Keys are not sorted : " + previous + " >= " + key);
+			//the common prefix with the previous key
+			State state = root;
+			int i = 0;
+			while (i < key.length()) {
+				State last = state.getLastChild();
+				if (last == null || state.labels.charAt(state.labels.length() - 1) != key.charAt(i)) break;
+				state = last;
+				i++;
+			}
+			//what follows it will never change anymore
+			replaceOrRegister(state);
+			for ( ; i < key.length() ; i++) {
+				State child = new State();
+				state.labels.append(key.charAt(i));
+				state.targets.add(child);
+				state = child;
+			}
+			state.isFinal = true;
+			previous = key;
+		}
+		
+		/** Replaces the last child of a state, and recursively its own last children, by an equivalent registered state if any. */
+		private void replaceOrRegister(State state) {
+			State child = state.getLastChild();
+			if (child == null || child.id != -1) return;
+			replaceOrRegister(child);
+			String signature = child.getSignature();
+			State equivalent = (State)register.get(signature);
+			if (equivalent != null) state.targets.set(state.targets.size() - 1, equivalent);
+			else {
+				child.id = states.size();
+				states.add(child);
+				child.keys = child.isFinal ? 1 : 0;
+				for (int i = 0 ; i < child.targets.size() ; i++) child.keys += ((State)child.targets.get(i)).keys;
+				register.put(signature, child);
+			}
+		}
+		
+		private void freeze(KeyAutomaton automaton) {
+			replaceOrRegister(root);
+			//the root comes first
+			ArrayList all = new ArrayList(states.size() + 1);
+			all.add(root);
+			all.addAll(states);
+			int transitions = 0;
+			for (int s = 0 ; s < all.size() ; s++) transitions += ((State)all.get(s)).targets.size();
+			automaton.firstTransitions = new int[all.size() + 1];
+			automaton.finals = new boolean[all.size()];
+			automaton.labels = new char[transitions];
+			automaton.targets = new int[transitions];
+			automaton.ranks = new int[transitions];
+			int t = 0;
+			for (int s = 0 ; s < all.size() ; s++) {
+				State state = (State)all.get(s);
+				automaton.firstTransitions[s] = t;
+				automaton.finals[s] = state.isFinal;
+				//a state that ends a key leads first to this key
+				int rank = state.isFinal ? 1 : 0;
+				for (int i = 0 ; i < state.targets.size() ; i++) {
+					State target = (State)state.targets.get(i);
+					automaton.labels[t] = state.labels.charAt(i);
+					automaton.targets[t] = (target == root) ? 0 : target.id + 1;
+					automaton.ranks[t] = rank;
+					rank += target.keys;
+					t++;
+				}
+			}
+			automaton.firstTransitions[all.size()] = t;
+		}
+	}
+	
+}
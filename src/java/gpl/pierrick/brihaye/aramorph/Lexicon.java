@@ -0,0 +1,66 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/** A dictionary of prefixes, stems or suffixes. Every key, i.e. an unvocalized form, can have several
+ * {@link DictionaryEntry entries}.
+ * @author Pierrick Brihaye, 2003
+ */
+interface Lexicon {
+	
+	/** Whether or not the key is in the lexicon.
+	 * @param key The key
+	 * @return The result
+	 */
+	boolean hasKey(String key);
+	
+	/** Returns the entries for the given key, in the order of the dictionary.
+	 * @param key The key
+	 * @return The entries or <CODE>null</CODE> if the key is not in the lexicon
+	 */
+	Collection getEntries(String key);
+	
+	/** Returns the entries for the given key, grouped by category.
+	 * @param key The key
+	 * @return The groups or <CODE>null</CODE> if the key is not in the lexicon
+	 */
+	EntryGroups getGroups(String key);
+	
+	/** Returns the number of keys.
+	 * @return The number of keys
+	 */
+	int size();
+	
+	/** Returns an iterator on the keys.
+	 * @return The iterator
+	 */
+	Iterator keys();
+	
+}
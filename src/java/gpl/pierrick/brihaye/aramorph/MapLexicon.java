@@ -0,0 +1,73 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/** A lexicon whose entries are all held in a <CODE>Map</CODE> where the <PRE>key</PRE> is the entry and
+ * its <PRE>value</PRE> is a <CODE>Collection</CODE> of {@link DictionaryEntry entries}.
+ * @author Pierrick Brihaye, 2003
+ */
+class MapLexicon implements Lexicon {
+	
+	private Map map;
+	
+	/** Constructs a lexicon backed by a map.
+	 * @param map The map, e.g. a <CODE>MultiHashMap</CODE>
+	 */
+	MapLexicon(Map map) {
+		this.map = map;
+	}
+	
+	public boolean hasKey(String key) {
+		return map.containsKey(key);
+	}
+	
+	public Collection getEntries(String key) {
+		return (Collection)map.get(key);
+	}
+	
+	/** Returns the entries for the given key, grouped by category. The groups are computed at each call.
+	 * @param key The key
+	 * @return The groups or <CODE>null</CODE> if the key is not in the lexicon
+	 */
+	public EntryGroups getGroups(String key) {
+		Collection entries = getEntries(key);
+		return (entries == null) ? null : EntryGroups.group(entries);
+	}
+	
+	public int size() {
+		return map.size();
+	}
+	
+	public Iterator keys() {
+		return map.keySet().iterator();
+	}
+	
+}
@@ -0,0 +1,592 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+import org.apache.commons.collections.MultiHashMap;
+
+/** A read-only lexicon laid out in flat byte regions, as found in a dictionary snapshot. When the snapshot is
+ * memory-mapped, the lexicon lives outside of the Java heap and can be shared by several JVMs through the
+ * OS page cache : the entries are served as lightweight views that read their fields on demand.
+ * <P>Layout (all offsets are relative to the start of their region) :</P>
+ * <PRE>
+ * keys (int), entries (int), keys region length (int), strings region length (int), buckets (int)
+ * key offsets (int * (keys + 1))
+ * first entry of each key (int * (keys + 1))
+ * entry records (int * 7 * entries) : entry, lemmaID, vocalization, morphology, gloss, glosses, POS
+ * bucket displacements (int * buckets) and key of each slot (int * keys) : see {@link PerfectHash}
+ * keys region : ISO-8859-1 bytes of the keys, in ascending order
+ * strings region : strings (unsigned short length + UTF-8 bytes) and lists of strings (unsigned short count + int offsets)
+ * </PRE>
+ * Strings and lists of strings are shared by all the entries that use them.
+ * @author Pierrick Brihaye, 2003
+ */
+class MappedLexicon implements SortedLexicon {
+	
+	private static final int HEADER_LENGTH = 5 * 4;
+	/** Fields of an entry record. */
+	static final int ENTRY = 0;
+	static final int LEMMA_ID = 1;
+	static final int VOCALIZATION = 2;
+	static final int MORPHOLOGY = 3;
+	static final int GLOSS = 4;
+	static final int GLOSSES = 5;
+	static final int POS = 6;
+	static final int FIELDS = 7;
+	
+	/** The lexicon region. Only absolute reads are performed, so that it can be shared by several threads. */
+	private ByteBuffer buffer;
+	private int keyCount;
+	private int entryCount;
+	private int keyOffsets;
+	private int keyEntries;
+	private int entryRecords;
+	private int bucketCount;
+	private int displacements;
+	private int slotKeys;
+	private int keysRegion;
+	private int stringsRegion;
+	/** The offsets of the distinct morphologies in the strings region, in ascending order... */
+	private int[] morphologies;
+	/** ... and the IDs of their categories. */
+	private int[] categories;
+	/** The groups of the keys looked up so far, built on first use. */
+	private EntryGroups[] groups;
+	
+	/** Constructs a lexicon over a region of a snapshot.
+	 * @param buffer The region. Its position must be 0
+	 * @param categories The categories of the lexicon, where the morphologies of the entries are interned
+	 */
+	MappedLexicon(ByteBuffer buffer, MorphologyCategories categories) {
+		this.buffer = buffer;
+		keyCount = buffer.getInt(0);
+		entryCount = buffer.getInt(4);
+		int keysLength = buffer.getInt(8);
+		bucketCount = buffer.getInt(16);
+		keyOffsets = HEADER_LENGTH;
+		keyEntries = keyOffsets + 4 * (keyCount + 1);
+		entryRecords = keyEntries + 4 * (keyCount + 1);
+		displacements = entryRecords + 4 * FIELDS * entryCount;
+		slotKeys = displacements + 4 * bucketCount;
+		keysRegion = slotKeys + 4 * keyCount;
+		stringsRegion = keysRegion + keysLength;
+		groups = new EntryGroups[keyCount];
+		internCategories(categories);
+	}
+	
+	/** Interns the morphologies of the entries. Since the strings are stored only once,
+	 * their offsets identify them.
+	 * @param table The categories
+	 */
+	private void internCategories(MorphologyCategories table) {
+		TreeSet offsets = new TreeSet();
+		for (int e = 0 ; e < entryCount ; e++) offsets.add(new Integer(getField(e, MORPHOLOGY)));
+		morphologies = new int[offsets.size()];
+		categories = new int[offsets.size()];
+		Iterator it = offsets.iterator();
+		for (int i = 0 ; i < morphologies.length ; i++) {
+			morphologies[i] = ((Integer)it.next()).intValue();
+			categories[i] = table.intern(getString(morphologies[i]));
+		}
+	}
+	
+	/** Returns the ID of the category of an entry.
+	 * @param e The index of the entry
+	 * @return The ID
+	 */
+	int getCategory(int e) {
+		return categories[Arrays.binarySearch(morphologies, getField(e, MORPHOLOGY))];
+	}
+	
+	/** Returns the index of a key.
+	 * @param key The key
+	 * @return The index or <CODE>-1</CODE> if the key is not in the lexicon
+	 */
+	int findKey(String key) {
+		return indexOf(key, 0, key.length());
+	}
+	
+	public int indexOf(CharSequence chars, int start, int end) {
+		if (keyCount == 0) return -1;
+		long hash = PerfectHash.hash(chars, start, end);
+		int displacement = buffer.getInt(displacements + 4 * PerfectHash.bucket(hash, bucketCount));
+		int k = buffer.getInt(slotKeys + 4 * PerfectHash.slot(hash, displacement, keyCount));
+		return (compareKey(k, chars, start, end) == 0) ? k : -1;
+	}
+	
+	/** Compares a key of the lexicon with another one.
+	 * @param k The index of the key in the lexicon
+	 * @param chars The chars of the other key
+	 * @param from The start of the other key
+	 * @param to The end (exclusive) of the other key
+	 * @return A negative, zero or positive value, as <CODE>String.compareTo</CODE> would
+	 */
+	private int compareKey(int k, CharSequence chars, int from, int to) {
+		int start = keysRegion + buffer.getInt(keyOffsets + 4 * k);
+		int length = keysRegion + buffer.getInt(keyOffsets + 4 * (k + 1)) - start;
+		int common = Math.min(length, to - from);
+		for (int i = 0 ; i < common ; i++) {
+			int diff = (buffer.get(start + i) & 0xFF) - chars.charAt(from + i);
+			if (diff != 0) return diff;
+		}
+		return length - (to - from);
+	}
+	
+	/** Returns a key.
+	 * @param k The index of the key
+	 * @return The key
+	 */
+	String getKey(int k) {
+		int start = keysRegion + buffer.getInt(keyOffsets + 4 * k);
+		int end = keysRegion + buffer.getInt(keyOffsets + 4 * (k + 1));
+		char[] chars = new char[end - start];
+		for (int i = 0 ; i < chars.length ; i++) chars[i] = (char)(buffer.get(start + i) & 0xFF);
+		return new String(chars);
+	}
+	
+	/** Returns the index of the first entry of a key.
+	 * @param k The index of the key
+	 * @return The index of the entry
+	 */
+	int getFirstEntry(int k) {
+		return buffer.getInt(keyEntries + 4 * k);
+	}
+	
+	/** Returns the index following the last entry of a key.
+	 * @param k The index of the key
+	 * @return The index of the entry
+	 */
+	int getEntryLimit(int k) {
+		return buffer.getInt(keyEntries + 4 * (k + 1));
+	}
+	
+	/** Returns the number of entries.
+	 * @return The number of entries
+	 */
+	int getEntryCount() {
+		return entryCount;
+	}
+	
+	/** Returns the offset of a field of an entry in the strings region.
+	 * @param e The index of the entry
+	 * @param field The field
+	 * @return The offset
+	 */
+	private int getField(int e, int field) {
+		return buffer.getInt(entryRecords + 4 * (FIELDS * e + field));
+	}
+	
+	/** Decodes a string of the strings region.
+	 * @param offset The offset of the string
+	 * @return The string
+	 */
+	private String getString(int offset) {
+		int start = stringsRegion + offset + 2;
+		int length = buffer.getShort(start - 2) & 0xFFFF;
+		char[] chars = new char[length];
+		for (int i = 0 ; i < length ; i++) {
+			byte b = buffer.get(start + i);
+			//non-ASCII : let the JDK decode it
+			if (b < 0) return decodeUTF8(start, length);
+			chars[i] = (char)b;
+		}
+		return new String(chars);
+	}
+	
+	private String decodeUTF8(int start, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0 ; i < length ; i++) bytes[i] = buffer.get(start + i);
+		try {
+			return new String(bytes, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("UTF-8 is not supported");
+		}
+	}
+	
+	/** Copies some ints of the lexicon region in a single pass.
+	 * @param position The position of the first int
+	 * @param count The number of ints
+	 * @return The ints
+	 */
+	private int[] readInts(int position, int count) {
+		int[] ints = new int[count];
+		ByteBuffer region = buffer.duplicate();
+		region.position(position);
+		region.asIntBuffer().get(ints);
+		return ints;
+	}
+	
+	/** Copies some bytes of the lexicon region in a single pass.
+	 * @param position The position of the first byte
+	 * @param count The number of bytes
+	 * @return The bytes
+	 */
+	private byte[] readBytes(int position, int count) {
+		byte[] bytes = new byte[count];
+		ByteBuffer region = buffer.duplicate();
+		region.position(position);
+		region.get(bytes);
+		return bytes;
+	}
+	
+	/** Copies the offsets of the keys in the keys region, followed by its length.
+	 * @return The offsets
+	 */
+	int[] readKeyOffsets() {
+		return readInts(keyOffsets, keyCount + 1);
+	}
+	
+	/** Copies the first entry of each key, followed by the number of entries.
+	 * @return The entries
+	 */
+	int[] readKeyEntries() {
+		return readInts(keyEntries, keyCount + 1);
+	}
+	
+	/** Copies the entry records, i.e. {@link #FIELDS} offsets in the strings region for each entry.
+	 * @return The records
+	 */
+	int[] readRecords() {
+		return readInts(entryRecords, FIELDS * entryCount);
+	}
+	
+	/** Copies the displacements of the buckets of the perfect hash.
+	 * @return The displacements
+	 */
+	int[] readDisplacements() {
+		return readInts(displacements, bucketCount);
+	}
+	
+	/** Copies the key of each slot of the perfect hash.
+	 * @return The keys
+	 */
+	int[] readSlotKeys() {
+		return readInts(slotKeys, keyCount);
+	}
+	
+	/** Copies the keys region.
+	 * @return The region
+	 */
+	byte[] readKeys() {
+		return readBytes(keysRegion, stringsRegion - keysRegion);
+	}
+	
+	/** Copies the strings region.
+	 * @return The region
+	 */
+	byte[] readStrings() {
+		return readBytes(stringsRegion, buffer.getInt(12));
+	}
+	
+	/** Decodes a list of strings of the strings region.
+	 * @param offset The offset of the list
+	 * @param cache Already decoded strings, by offset. Can be <CODE>null</CODE>
+	 * @return The strings
+	 */
+	private String[] getStrings(int offset, HashMap cache) {
+		int start = stringsRegion + offset + 2;
+		String[] strings = new String[buffer.getShort(start - 2) & 0xFFFF];
+		for (int i = 0 ; i < strings.length ; i++) strings[i] = getString(buffer.getInt(start + 4 * i), cache);
+		return strings;
+	}
+	
+	/** Decodes a string of the strings region, sharing the instances of a cache.
+	 * @param offset The offset of the string
+	 * @param cache Already decoded strings, by offset. Can be <CODE>null</CODE>
+	 * @return The string
+	 */
+	private String getString(int offset, HashMap cache) {
+		if (cache == null) return getString(offset);
+		Integer key = new Integer(offset);
+		String s = (String)cache.get(key);
+		if (s == null) {
+			s = getString(offset);
+			cache.put(key, s);
+		}
+		return s;
+	}
+	
+	/** Returns a view on an entry : its fields are read on demand.
+	 * @param e The index of the entry
+	 * @return The entry
+	 */
+	DictionaryEntry getEntry(int e) {
+		return new MappedEntry(e);
+	}
+	
+	/** Reads all the fields of an entry.
+	 * @param e The index of the entry
+	 * @param cache Already decoded strings, by offset, in order to share identical strings. Can be <CODE>null</CODE>
+	 * @return The entry
+	 */
+	DictionaryEntry readEntry(int e, HashMap cache) {
+		DictionaryEntry de = new DictionaryEntry(
+			getString(getField(e, ENTRY), cache),
+			getString(getField(e, LEMMA_ID), cache),
+			getString(getField(e, VOCALIZATION), cache),
+			getString(getField(e, MORPHOLOGY), cache),
+			getString(getField(e, GLOSS), cache),
+			getStrings(getField(e, GLOSSES), cache),
+			getStrings(getField(e, POS), cache));
+		de.setCategory(getCategory(e));
+		return de;
+	}
+	
+	/** Reads some keys and their entries into a map.
+	 * @param from The index of the first key
+	 * @param to The index following the last key
+	 * @param set The map where to add the entries, e.g. a <CODE>MultiHashMap</CODE>
+	 */
+	void readKeys(int from, int to, MultiHashMap set) {
+		HashMap cache = new HashMap();
+		for (int k = from ; k < to ; k++) {
+			String key = getKey(k);
+			int limit = getEntryLimit(k);
+			for (int e = getFirstEntry(k) ; e < limit ; e++) {
+				//MultiHashMap adds the value to the key's collection
+				set.put(key, readEntry(e, cache));
+			}
+		}
+	}
+	
+	public boolean hasKey(String key) {
+		return findKey(key) != -1;
+	}
+	
+	public Collection getEntries(String key) {
+		int k = findKey(key);
+		if (k == -1) return null;
+		return new EntryList(getFirstEntry(k), getEntryLimit(k));
+	}
+	
+	/** Returns the entries for the given key, grouped by category. The groups are kept in the heap
+	 * once they have been computed, but their entries are still views.
+	 * @param key The key
+	 * @return The groups or <CODE>null</CODE> if the key is not in the lexicon
+	 */
+	public EntryGroups getGroups(String key) {
+		int k = findKey(key);
+		return (k == -1) ? null : getGroups(k);
+	}
+	
+	/** Returns the entries for the key of the given rank, grouped by category. The groups are kept in the heap
+	 * once they have been computed, but their entries are still views.
+	 * @param k The rank of the key
+	 * @return The groups
+	 */
+	public EntryGroups getGroups(int k) {
+		//groups are immutable : a concurrent thread would at worst build them again
+		EntryGroups cached = groups[k];
+		if (cached == null) {
+			cached = EntryGroups.group(new EntryList(getFirstEntry(k), getEntryLimit(k)));
+			groups[k] = cached;
+		}
+		return cached;
+	}
+	
+	public int size() {
+		return keyCount;
+	}
+	
+	public Iterator keys() {
+		return new Iterator() {
+			private int k = 0;
+			public boolean hasNext() { return k < keyCount; }
+			public Object next() {
+				if (k >= keyCount) throw new NoSuchElementException();
+				return getKey(k++);
+			}
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+	
+	/** Writes a lexicon with this layout.
+	 * @param out The stream
+	 * @param lexicon The lexicon
+	 * @throws IOException If a problem occurs when writing the lexicon
+	 */
+	static void write(DataOutputStream out, Lexicon lexicon) throws IOException {
+		String[] keys = new String[lexicon.size()];
+		Iterator it_keys = lexicon.keys();
+		for (int k = 0 ; k < keys.length ; k++) keys[k] = (String)it_keys.next();
+		Arrays.sort(keys);
+		ByteArrayOutputStream keysRegion = new ByteArrayOutputStream();
+		StringsRegion strings = new StringsRegion();
+		int[] keyOffsets = new int[keys.length + 1];
+		int[] keyEntries = new int[keys.length + 1];
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		DataOutputStream recordsOut = new DataOutputStream(records);
+		int entries = 0;
+		for (int k = 0 ; k < keys.length ; k++) {
+			keyOffsets[k] = keysRegion.size();
+			keyEntries[k] = entries;
+			for (int i = 0 ; i < keys[k].length() ; i++) {
+				char c = keys[k].charAt(i);
+				if (c > 0xFF) throw new IOException("Key " + keys[k] + " is not ISO-8859-1");
+				keysRegion.write(c);
+			}
+			Iterator it_entries = lexicon.getEntries(keys[k]).iterator();
+			while (it_entries.hasNext()) {
+				DictionaryEntry de = (DictionaryEntry)it_entries.next();
+				recordsOut.writeInt(strings.add(de.getEntry()));
+				recordsOut.writeInt(strings.add(de.getLemmaID()));
+				recordsOut.writeInt(strings.add(de.getVocalization()));
+				recordsOut.writeInt(strings.add(de.getMorphology()));
+				recordsOut.writeInt(strings.add(de.getGloss()));
+				recordsOut.writeInt(strings.add(de.getGlosses()));
+				recordsOut.writeInt(strings.add(de.getPOS()));
+				entries++;
+			}
+		}
+		keyOffsets[keys.length] = keysRegion.size();
+		keyEntries[keys.length] = entries;
+		recordsOut.flush();
+		int[] displacements = new int[PerfectHash.getBucketCount(keys.length)];
+		int[] slots = PerfectHash.build(keys, displacements);
+		int[] slotKeys = new int[keys.length];
+		for (int k = 0 ; k < keys.length ; k++) slotKeys[slots[k]] = k;
+		out.writeInt(keys.length);
+		out.writeInt(entries);
+		out.writeInt(keysRegion.size());
+		out.writeInt(strings.size());
+		out.writeInt(displacements.length);
+		for (int k = 0 ; k <= keys.length ; k++) out.writeInt(keyOffsets[k]);
+		for (int k = 0 ; k <= keys.length ; k++) out.writeInt(keyEntries[k]);
+		records.writeTo(out);
+		for (int b = 0 ; b < displacements.length ; b++) out.writeInt(displacements[b]);
+		for (int k = 0 ; k < keys.length ; k++) out.writeInt(slotKeys[k]);
+		keysRegion.writeTo(out);
+		strings.writeTo(out);
+	}
+	
+	/** A strings region under construction, where every string or list of strings is only written once. */
+	private static class StringsRegion {
+		
+		private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private DataOutputStream out = new DataOutputStream(bytes);
+		private HashMap offsets = new HashMap();
+		
+		private int add(String s) throws IOException {
+			Integer offset = (Integer)offsets.get(s);
+			if (offset == null) {
+				byte[] utf8 = s.getBytes("UTF-8");
+				if (utf8.length > 0xFFFF) throw new IOException("String too long for a snapshot : " + s.substring(0, 32) + "...");
+				offset = new Integer(bytes.size());
+				out.writeShort(utf8.length);
+				out.write(utf8);
+				out.flush();
+				offsets.put(s, offset);
+			}
+			return offset.intValue();
+		}
+		
+		private int add(String[] strings) throws IOException {
+			int[] elements = new int[strings.length];
+			for (int i = 0 ; i < strings.length ; i++) elements[i] = add(strings[i]);
+			//lists are keyed apart from strings
+			String key = "\u0000" + Arrays.asList(strings).toString() + strings.length;
+			Integer offset = (Integer)offsets.get(key);
+			if (offset == null) {
+				offset = new Integer(bytes.size());
+				out.writeShort(strings.length);
+				for (int i = 0 ; i < elements.length ; i++) out.writeInt(elements[i]);
+				out.flush();
+				offsets.put(key, offset);
+			}
+			return offset.intValue();
+		}
+		
+		private int size() {
+			return bytes.size();
+		}
+		
+		private void writeTo(DataOutputStream target) throws IOException {
+			bytes.writeTo(target);
+		}
+	}
+	
+	/** The entries of a key, as views. */
+	private class EntryList extends AbstractList {
+		
+		private int first;
+		private int limit;
+		
+		private EntryList(int first, int limit) {
+			this.first = first;
+			this.limit = limit;
+		}
+		
+		public Object get(int index) {
+			if (index < 0 || first + index >= limit) throw new IndexOutOfBoundsException("Index: " + index);
+			return new MappedEntry(first + index);
+		}
+		
+		public int size() {
+			return limit - first;
+		}
+	}
+	
+	/** A view on an entry of the lexicon : nothing but its index is kept on the heap. */
+	private class MappedEntry extends DictionaryEntry {
+		
+		private int e;
+		
+		private MappedEntry(int e) {
+			this.e = e;
+		}
+		
+		protected String getEntry() { return getString(getField(e, ENTRY)); }
+		
+		protected String getLemmaID() { return getString(getField(e, LEMMA_ID)); }
+		
+		protected String getVocalization() { return getString(getField(e, VOCALIZATION)); }
+		
+		protected String getMorphology() { return getString(getField(e, MORPHOLOGY)); }
+		
+		protected String[] getPOS() { return getStrings(getField(e, POS), null); }
+		
+		protected String getGloss() { return getString(getField(e, GLOSS)); }
+		
+		protected String[] getGlosses() { return getStrings(getField(e, GLOSSES), null); }
+		
+		protected int getCategory() { return MappedLexicon.this.getCategory(e); }
+	}
+	
+}
@@ -0,0 +1,142 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+/** The morphological categories (e.g. <CODE>Pref-0</CODE>, <CODE>NSuff-a</CODE>...) of a lexicon, interned to
+ * dense integer IDs so that the compatibility tables can be stored as bit matrices.
+ * <P>Categories are only interned while the dictionaries are loaded ; afterwards, the table is only read
+ * and can be shared by several threads.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class MorphologyCategories {
+	
+	/** <PRE>key</PRE> = category, <PRE>value</PRE> = ID */
+	private HashMap ids = new HashMap();
+	/** The categories, by ID. */
+	private ArrayList names = new ArrayList();
+	
+	/** Returns the ID of a category, giving it a new one if necessary.
+	 * @param category The category
+	 * @return The ID
+	 */
+	int intern(String category) {
+		Integer id = (Integer)ids.get(category);
+		if (id == null) {
+			id = new Integer(names.size());
+			ids.put(category, id);
+			names.add(category);
+		}
+		return id.intValue();
+	}
+	
+	/** Returns the ID of a category.
+	 * @param category The category
+	 * @return The ID or <CODE>-1</CODE> if the category is unknown
+	 */
+	int getID(String category) {
+		Integer id = (Integer)ids.get(category);
+		return (id == null) ? -1 : id.intValue();
+	}
+	
+	/** Returns the name of a category.
+	 * @param id The ID
+	 * @return The category
+	 */
+	String getName(int id) {
+		return (String)names.get(id);
+	}
+	
+	/** Returns the number of categories.
+	 * @return The number of categories
+	 */
+	int size() {
+		return names.size();
+	}
+	
+	/** Builds a compatibility matrix between the categories of two lexicons.
+	 * @param table The compatibility table : "category1 category2" combinations
+	 * @param rows The categories of the first lexicon
+	 * @param columns The categories of the second lexicon
+	 * @return The matrix
+	 */
+	static Matrix buildMatrix(Set table, MorphologyCategories rows, MorphologyCategories columns) {
+		Matrix matrix = new Matrix(rows.size(), columns.size());
+		Iterator it = table.iterator();
+		while (it.hasNext()) {
+			String combination = (String)it.next();
+			int space = combination.indexOf(' ');
+			//categories unknown to the lexicons can not be met
+			int row = rows.getID(combination.substring(0, space));
+			int column = columns.getID(combination.substring(space + 1));
+			if (row != -1 && column != -1) matrix.set(row, column);
+		}
+		return matrix;
+	}
+	
+	/** A bit matrix telling which categories of two lexicons are compatible. */
+	static class Matrix {
+		
+		private BitSet bits;
+		private int rows;
+		private int columns;
+		
+		/** Builds an empty matrix.
+		 * @param rows The number of rows
+		 * @param columns The number of columns
+		 */
+		Matrix(int rows, int columns) {
+			this.rows = rows;
+			this.columns = columns;
+			this.bits = new BitSet(rows * columns);
+		}
+		
+		/** Marks two categories as compatible.
+		 * @param row The ID of the category in the first lexicon
+		 * @param column The ID of the category in the second lexicon
+		 */
+		void set(int row, int column) {
+			bits.set(row * columns + column);
+		}
+		
+		/** Whether or not two categories are compatible.
+		 * @param row The ID of the category in the first lexicon
+		 * @param column The ID of the category in the second lexicon
+		 * @return The result
+		 */
+		boolean get(int row, int column) {
+			if (row < 0 || row >= rows || column < 0 || column >= columns) return false;
+			return bits.get(row * columns + column);
+		}
+	}
+	
+}
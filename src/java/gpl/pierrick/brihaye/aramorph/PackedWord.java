@@ -0,0 +1,93 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+
+package gpl.pierrick.brihaye.aramorph;
+
+/** Packs a word in the Buckwalter transliteration system into a <CODE>long</CODE>, at 6 bits per char.
+ * The system has less than 64 chars : words of up to {@link #MAX_LENGTH} chars, i.e. most of them, fit in 60 bits.
+ * Longer words, or words with a char out of the system, can not be packed and take an overflow path.
+ * <P>Each char has a non-zero code, so that two different words never have the same key.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+final class PackedWord {
+	
+	/** The longest word that can be packed. */
+	static final int MAX_LENGTH = 10;
+	/** The key of the words that can not be packed. Never the key of a packed word. */
+	static final long OVERFLOW = -1L;
+	
+	/** The chars of the Buckwalter transliteration system. The code of a char is its position + 1. */
+	private static final String ALPHABET = "'|>&<}AbptvjHxd*rzs$SDTZEg_fqklmnhwYyFNKaui~o`{PJVGR,;?";
+	/** The code of each ASCII char, <CODE>0</CODE> if it is out of the system. */
+	private static final byte[] codes = new byte[128];
+	
+	static {
+		if (ALPHABET.length() > 63) throw new RuntimeException("Too many chars to be packed at 6 bits per char");
+		for (int i = 0 ; i < ALPHABET.length() ; i++) codes[ALPHABET.charAt(i)] = (byte)(i + 1);
+	}
+	
+	/** No instances. */
+	private PackedWord() {}
+	
+	/** Packs a word.
+	 * @param word The word
+	 * @return The key of the word or {@link #OVERFLOW} if it can not be packed
+	 */
+	static long pack(CharSequence word) {
+		return pack(word, 0, word.length());
+	}
+	
+	/** Packs a part of a word.
+	 * @param word The word
+	 * @param start The start of the part
+	 * @param end The end (exclusive) of the part
+	 * @return The key of the part or {@link #OVERFLOW} if it can not be packed
+	 */
+	static long pack(CharSequence word, int start, int end) {
+		if (end - start > MAX_LENGTH) return OVERFLOW;
+		long key = 0;
+		for (int i = start ; i < end ; i++) {
+			char c = word.charAt(i);
+			if (c >= 128 || codes[c] == 0) return OVERFLOW;
+			key = (key << 6) | codes[c];
+		}
+		return key;
+	}
+	
+	/** Unpacks a key.
+	 * @param key The key of a word
+	 * @return The word
+	 */
+	static String unpack(long key) {
+		if (key < 0) throw new RuntimeException("Not the key of a packed word : " + key);
+		char[] chars = new char[MAX_LENGTH];
+		int start = MAX_LENGTH;
+		for ( ; key != 0 ; key >>>= 6) chars[--start] = ALPHABET.charAt((int)(key & 0x3F) - 1);
+		return new String(chars, start, MAX_LENGTH - start);
+	}
+	
+}
@@ -0,0 +1,164 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/** A minimal perfect hash : every key of a set gets its own slot in <CODE>[0, n)</CODE>.
+ * A first hash selects a bucket of keys ; the slot of a key is then given by a second hash
+ * seeded by the displacement of its bucket. The displacements are computed once, when the set is known.
+ * <P>Any string gets a slot : lookups must check that the key in the slot is the looked up one.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class PerfectHash {
+	
+	/** The average number of keys by bucket. */
+	static final int BUCKET_SIZE = 3;
+	
+	/** No instances. */
+	private PerfectHash() {}
+	
+	/** Hashes a key : the high half selects the bucket, the whole hash and the displacement of the bucket give the slot.
+	 * @param key The key
+	 * @return The hash
+	 */
+	static long hash(String key) {
+		return hash(key, 0, key.length());
+	}
+	
+	/** Hashes a key lying in a sequence of chars, as {@link #hash(String)} would hash it once extracted.
+	 * @param chars The chars
+	 * @param start The start of the key
+	 * @param end The end (exclusive) of the key
+	 * @return The hash
+	 */
+	static long hash(CharSequence chars, int start, int end) {
+		int h1 = 0x811C9DC5;
+		int h2 = 0x9E3779B9;
+		for (int i = start ; i < end ; i++) {
+			char c = chars.charAt(i);
+			h1 = (h1 ^ c) * 0x01000193;
+			h2 = (h2 ^ c) * 0x5BD1E995;
+		}
+		return ((long)mix(h1) << 32) | (mix(h2) & 0xFFFFFFFFL);
+	}
+	
+	/** Final avalanche of a hash. */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+	
+	/** Returns the bucket of a key.
+	 * @param hash The hash of the key
+	 * @param buckets The number of buckets
+	 * @return The bucket
+	 */
+	static int bucket(long hash, int buckets) {
+		return ((int)(hash >>> 32) & 0x7FFFFFFF) % buckets;
+	}
+	
+	/** Returns the slot of a key.
+	 * @param hash The hash of the key
+	 * @param displacement The displacement of its bucket
+	 * @param slots The number of slots
+	 * @return The slot
+	 */
+	static int slot(long hash, int displacement, int slots) {
+		return (mix((int)hash ^ mix((int)(hash >>> 32) + displacement * 0x9E3779B9)) & 0x7FFFFFFF) % slots;
+	}
+	
+	/** Returns the number of buckets for a set of keys.
+	 * @param keys The number of keys
+	 * @return The number of buckets
+	 */
+	static int getBucketCount(int keys) {
+		return keys / BUCKET_SIZE + 1;
+	}
+	
+	/** Computes the displacement of every bucket so that the keys get distinct slots.
+	 * @param keys The keys. They must be distinct
+	 * @param displacements Where to store the displacements. Its length must be given by {@link #getBucketCount(int)}
+	 * @return The slot of each key
+	 * @throws RuntimeException If no displacement can be found for a bucket
+	 */
+	static int[] build(String[] keys, int[] displacements) throws RuntimeException {
+		int bucketCount = displacements.length;
+		long[] hashes = new long[keys.length];
+		int[] sizes = new int[bucketCount];
+		for (int k = 0 ; k < keys.length ; k++) {
+			hashes[k] = hash(keys[k]);
+			sizes[bucket(hashes[k], bucketCount)]++;
+		}
+		//the keys of each bucket
+		int[][] buckets = new int[bucketCount][];
+		for (int b = 0 ; b < bucketCount ; b++) buckets[b] = new int[sizes[b]];
+		int[] filled = new int[bucketCount];
+		for (int k = 0 ; k < keys.length ; k++) {
+			int b = bucket(hashes[k], bucketCount);
+			buckets[b][filled[b]++] = k;
+		}
+		//place the biggest buckets first, while the slots are still mostly free
+		Integer[] order = new Integer[bucketCount];
+		for (int b = 0 ; b < bucketCount ; b++) order[b] = new Integer(b);
+		final int[] bucketSizes = sizes;
+		Arrays.sort(order, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return bucketSizes[((Integer)o2).intValue()] - bucketSizes[((Integer)o1).intValue()];
+			}
+		});
+		boolean[] taken = new boolean[keys.length];
+		int[] slots = new int[keys.length];
+		for (int i = 0 ; i < bucketCount ; i++) {
+			int[] bucket = buckets[order[i].intValue()];
+			if (bucket.length == 0) break;
+			for (int d = 0 ; ; d++) {
+				if (d == Integer.MAX_VALUE) throw new RuntimeException("Can not build a perfect hash for " + keys.length + " keys");
+				boolean placed = true;
+				for (int j = 0 ; j < bucket.length && placed ; j++) {
+					int slot = slot(hashes[bucket[j]], d, keys.length);
+					if (taken[slot]) placed = false;
+					//keys of the same bucket may collide with each other
+					for (int l = 0 ; l < j && placed ; l++) if (slots[bucket[l]] == slot) placed = false;
+					slots[bucket[j]] = slot;
+				}
+				if (placed) {
+					for (int j = 0 ; j < bucket.length ; j++) taken[slots[bucket[j]]] = true;
+					displacements[order[i].intValue()] = d;
+					break;
+				}
+			}
+		}
+		return slots;
+	}
+	
+}
@@ -0,0 +1,99 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.BitSet;
+import java.util.Iterator;
+
+/** The lengths of the keys of the dictionaries, computed once they are loaded. They tell which segmentations
+ * of a word are possible before looking anything up : a word longer than the longest prefix, stem and suffix together
+ * has no solution, nor has a segmentation whose stem length is not the one of a stem.
+ * @author Pierrick Brihaye, 2003
+ */
+class SegmentationBounds {
+	
+	private final int minPrefixLength;
+	private final int maxPrefixLength;
+	private final int minStemLength;
+	private final int maxStemLength;
+	private final int minSuffixLength;
+	private final int maxSuffixLength;
+	/** The lengths of the stems. */
+	private final BitSet stemLengths = new BitSet();
+	
+	/** Computes the bounds of some dictionaries.
+	 * @param prefixes Dictionary of prefixes
+	 * @param stems Dictionary of stems
+	 * @param suffixes Dictionary of suffixes
+	 */
+	SegmentationBounds(Lexicon prefixes, Lexicon stems, Lexicon suffixes) {
+		BitSet prefixLengths = getLengths(prefixes);
+		BitSet suffixLengths = getLengths(suffixes);
+		stemLengths.or(getLengths(stems));
+		minPrefixLength = Math.max(0, prefixLengths.nextSetBit(0));
+		maxPrefixLength = Math.max(0, prefixLengths.length() - 1);
+		minStemLength = Math.max(0, stemLengths.nextSetBit(0));
+		maxStemLength = Math.max(0, stemLengths.length() - 1);
+		minSuffixLength = Math.max(0, suffixLengths.nextSetBit(0));
+		maxSuffixLength = Math.max(0, suffixLengths.length() - 1);
+	}
+	
+	private static BitSet getLengths(Lexicon lexicon) {
+		BitSet lengths = new BitSet();
+		Iterator it = lexicon.keys();
+		while (it.hasNext()) lengths.set(((String)it.next()).length());
+		return lengths;
+	}
+	
+	/** Whether or not a word of the given length may have a segmentation.
+	 * @param length The length of the word
+	 * @return The result
+	 */
+	boolean hasSegmentation(int length) {
+		return length >= minPrefixLength + minStemLength + minSuffixLength
+			&& length <= maxPrefixLength + maxStemLength + maxSuffixLength;
+	}
+	
+	/** Whether or not some stems have the given length.
+	 * @param length The length
+	 * @return The result
+	 */
+	boolean hasStemLength(int length) {
+		return length >= 0 && stemLengths.get(length);
+	}
+	
+	int getMinStemLength() { return minStemLength; }
+	
+	/** Describes the bounds.
+	 * @return The description
+	 */
+	public String toString() {
+		return "prefixes " + minPrefixLength + "-" + maxPrefixLength + ", stems " + minStemLength + "-" + maxStemLength
+			+ " (" + stemLengths.cardinality() + " lengths), suffixes " + minSuffixLength + "-" + maxSuffixLength + " chars";
+	}
+	
+}
@@ -0,0 +1,213 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.collections.MultiHashMap;
+
+/** A lexicon split in shards by the first chars of the keys. A shard is only read from the dictionary
+ * snapshot the first time one of its keys is looked up, which saves time and memory when only a small part
+ * of the vocabulary is used.
+ * <P>Loading is thread-safe : a shard is loaded once, by the first thread that needs it, while lookups
+ * in already loaded shards don't need any lock.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class ShardedLexicon implements SortedLexicon {
+	
+	/** How many chars of the keys select their shard. */
+	static final int SHARD_PREFIX_LENGTH = 2;
+	/** The first chars of the keys of each shard, in ascending order. Shorter keys have their own shard. */
+	private String[] firsts;
+	/** The shards, in the order of {@link #firsts}. */
+	private Shard[] shards;
+	/** The image the shards are read from. */
+	private MappedLexicon image;
+	/** The number of shards loaded so far. */
+	private int loadedShards = 0;
+	
+	/** Constructs a lexicon whose shards are still to be read.
+	 * @param image The image of the lexicon in the snapshot. Its keys are sorted, hence those of a shard are contiguous
+	 */
+	ShardedLexicon(MappedLexicon image) {
+		this.image = image;
+		ArrayList firstList = new ArrayList();
+		ArrayList shardList = new ArrayList();
+		int from = 0;
+		String first = null;
+		for (int k = 0 ; k <= image.size() ; k++) {
+			String shard = (k == image.size()) ? null : getShard(image.getKey(k));
+			if (first != null && !first.equals(shard)) {
+				firstList.add(first);
+				shardList.add(new Shard(from, k));
+				from = k;
+			}
+			first = shard;
+		}
+		this.firsts = (String[])firstList.toArray(new String[firstList.size()]);
+		this.shards = (Shard[])shardList.toArray(new Shard[shardList.size()]);
+	}
+	
+	/** Returns the shard of a key, i.e. its first chars.
+	 * @param key The key
+	 * @return The shard
+	 */
+	static String getShard(String key) {
+		return (key.length() <= SHARD_PREFIX_LENGTH) ? key : key.substring(0, SHARD_PREFIX_LENGTH);
+	}
+	
+	/** Returns the shard the key belongs to.
+	 * @param key The key
+	 * @return The shard or <CODE>null</CODE> if no key of the lexicon starts like this one
+	 */
+	private Shard findShard(String key) {
+		int i = Arrays.binarySearch(firsts, getShard(key));
+		return (i < 0) ? null : shards[i];
+	}
+	
+	/** Returns the entries of the shard the key belongs to, loading them if necessary.
+	 * @param key The key
+	 * @return The entries or <CODE>null</CODE> if no key of the lexicon starts like this one
+	 */
+	private Map getShardEntries(String key) {
+		Shard shard = findShard(key);
+		return (shard == null) ? null : shard.getEntries();
+	}
+	
+	public boolean hasKey(String key) {
+		Map shard = getShardEntries(key);
+		return (shard != null && shard.containsKey(key));
+	}
+	
+	public Collection getEntries(String key) {
+		Map shard = getShardEntries(key);
+		return (shard == null) ? null : (Collection)shard.get(key);
+	}
+	
+	public EntryGroups getGroups(String key) {
+		Shard shard = findShard(key);
+		return (shard == null) ? null : (EntryGroups)shard.getGroups().get(key);
+	}
+	
+	public EntryGroups getGroups(int index) {
+		//the last shard starting at or before this key
+		int low = 0;
+		int high = shards.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (shards[middle].from <= index) low = middle;
+			else high = middle - 1;
+		}
+		return (EntryGroups)shards[low].getGroups().get(image.getKey(index));
+	}
+	
+	public int indexOf(CharSequence chars, int start, int end) {
+		//the image knows the ranks : no need to load a shard
+		return image.indexOf(chars, start, end);
+	}
+	
+	public int size() {
+		return image.size();
+	}
+	
+	/** Returns an iterator on the keys, in ascending order. Unlike the entries, they are read from the image without loading any shard.
+	 * @return The iterator
+	 */
+	public Iterator keys() {
+		return image.keys();
+	}
+	
+	/** Returns the number of shards.
+	 * @return The number of shards
+	 */
+	int getShardCount() {
+		return shards.length;
+	}
+	
+	/** Returns the number of shards loaded so far.
+	 * @return The number of loaded shards
+	 */
+	synchronized int getLoadedShardCount() {
+		return loadedShards;
+	}
+	
+	private synchronized void shardLoaded() {
+		loadedShards++;
+	}
+	
+	/** A shard of the lexicon. */
+	private class Shard {
+	
+		/** The keys of the shard in the image. */
+		private int from;
+		private int to;
+		/** <CODE>null</CODE> until the shard is loaded. */
+		private volatile Map entries = null;
+		/** The {@link EntryGroups groups} of the keys. Set before {@link #entries}. */
+		private HashMap groups = null;
+	
+		private Shard(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+	
+		private Map getEntries() {
+			Map loaded = entries;
+			if (loaded == null) {
+				synchronized (this) {
+					loaded = entries;
+					if (loaded == null) {
+						MultiHashMap map = new MultiHashMap(to - from);
+						image.readKeys(from, to, map);
+						HashMap keyGroups = new HashMap(map.size() * 4 / 3 + 1);
+						Iterator it = map.entrySet().iterator();
+						while (it.hasNext()) {
+							Map.Entry entry = (Map.Entry)it.next();
+							keyGroups.put(entry.getKey(), EntryGroups.group((Collection)entry.getValue()));
+						}
+						groups = keyGroups;
+						entries = loaded = map;
+						shardLoaded();
+					}
+				}
+			}
+			return loaded;
+		}
+	
+		private HashMap getGroups() {
+			//loading the entries publishes the groups
+			getEntries();
+			return groups;
+		}
+	}
+	
+}
@@ -0,0 +1,284 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/** Reads the tokens of a text encoded in a single-byte charset, such as CP1256 or ISO-8859-6, straight from its bytes.
+ * A table maps each byte to its char, to its Buckwalter transliteration and to its class with regard to the arabic boundaries :
+ * there is no intermediate <CODE>String</CODE> per line and no regular expression.
+ * <P>The tokens are the same as the ones that the command line interface gets by decoding the lines
+ * and splitting them on arabic boundaries. Tokens made of arabic letters are given with their transliteration ;
+ * the other ones are left to {@link AraMorph#analyzeToken(String, boolean) analyzeToken}.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class SingleByteTokenizer {
+	
+	/** Returned by {@link #next()} at the end of the stream. */
+	static final int END = 0;
+	/** Returned by {@link #next()} when a new line begins. */
+	static final int LINE = 1;
+	/** Returned by {@link #next()} for a token of arabic letters. */
+	static final int ARABIC = 2;
+	/** Returned by {@link #next()} for any other token. */
+	static final int OTHER = 3;
+	
+	/** A char that is neither a letter nor a white space. */
+	private static final byte SEPARATOR = 0;
+	/** A white space, but not a line terminator. */
+	private static final byte SPACE = 1;
+	/** A line terminator. */
+	private static final byte LINE_TERMINATOR = 2;
+	/** An arabic letter or diacritic. */
+	private static final byte LETTER = 3;
+	/** A char that belongs to a token but is not an arabic letter, e.g. tatweel. */
+	private static final byte OTHER_LETTER = 4;
+	
+	/** The char of each byte. */
+	private final char[] chars = new char[256];
+	/** The romanization of each byte, <CODE>Transliterator.STRIP</CODE> when it is stripped. */
+	private final char[] romans = new char[256];
+	/** The class of each byte. */
+	private final byte[] classes = new byte[256];
+	
+	private final InputStream in;
+	private final byte[] buffer = new byte[8192];
+	private int count = 0;
+	private int index = 0;
+	/** Whether or not a line feed following a carriage return should be skipped. */
+	private boolean skipLF = false;
+	
+	/** The bytes of the current line. */
+	private byte[] line = new byte[256];
+	private int length = 0;
+	private int lineNumber = 0;
+	/** The position in the current line or <CODE>-1</CODE> if a new line has to be read. */
+	private int position = -1;
+	/** The end of the current line, trailing white spaces excluded. */
+	private int end = 0;
+	/** Whether or not the whole line is a token, because it has no letter. */
+	private boolean wholeLine = false;
+	/** Whether or not an empty token comes before the first one, because the line begins with a separator. */
+	private boolean emptyToken = false;
+	
+	private char[] token = new char[64];
+	private char[] translitered = new char[64];
+	private String tokenString = null;
+	private String transliteredString = null;
+	
+	/** Constructs a tokenizer.
+	 * @param in The stream to be read
+	 * @param charset The charset of the stream. It must be a {@link #isSingleByte(Charset) single-byte} one
+	 */
+	SingleByteTokenizer(InputStream in, Charset charset) {
+		if (!isSingleByte(charset)) throw new RuntimeException(charset.name() + " is not a single-byte charset");
+		this.in = in;
+		byte[] bytes = new byte[1];
+		for (int b = 0 ; b < 256 ; b++) {
+			bytes[0] = (byte)b;
+			char c = new String(bytes, charset).charAt(0);
+			chars[b] = c;
+			romans[b] = Transliterator.romanize(c);
+			classes[b] = getClass(c);
+		}
+	}
+	
+	/** Returns whether or not each byte of a charset is a char on its own.
+	 * @param charset The charset
+	 * @return Whether or not the charset can be read by a tokenizer
+	 */
+	static boolean isSingleByte(Charset charset) {
+		if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) return false;
+		byte[] bytes = new byte[1];
+		for (int b = 0 ; b < 256 ; b++) {
+			bytes[0] = (byte)b;
+			if (new String(bytes, charset).length() != 1) return false;
+		}
+		return true;
+	}
+	
+	/** Returns the class of a char. The letters are the ones of the arabic boundaries used by the command line interface.
+	 * @param c The char
+	 * @return The class
+	 */
+	private static byte getClass(char c) {
+		if (c == '\n' || c == '\r') return LINE_TERMINATOR;
+		if (c == ' ' || c == '\t' || c == '\u000B' || c == '\f') return SPACE;
+		//\u067E : ARABIC LETTER PEH, \u0686 : ARABIC LETTER TCHEH, \u0698 : ARABIC LETTER JEH, \u06AF : ARABIC LETTER GAF
+		if (c == '\u067E' || c == '\u0686' || c == '\u0698' || c == '\u06AF') return LETTER;
+		//\u0621 : ARABIC LETTER HAMZA to \u063A : ARABIC LETTER GHAIN, \u0641 : ARABIC LETTER FEH to \u0652 : ARABIC SUKUN
+		if ((c >= '\u0621' && c <= '\u063A') || (c >= '\u0641' && c <= '\u0652')) return LETTER;
+		//ignored \u0640 : ARABIC TATWEEL
+		if (c > '\u063A' && c < '\u0641') return OTHER_LETTER;
+		return SEPARATOR;
+	}
+	
+	/** Reads the next line of the stream. Lines are terminated by a line feed, a carriage return or both.
+	 * @return Whether or not there was a line to be read
+	 * @throws IOException If the stream can not be read
+	 */
+	private boolean readLine() throws IOException {
+		length = 0;
+		while (true) {
+			if (index == count) {
+				count = in.read(buffer, 0, buffer.length);
+				index = 0;
+				if (count <= 0) {
+					count = 0;
+					return length > 0;
+				}
+			}
+			byte b = buffer[index++];
+			if (skipLF) {
+				skipLF = false;
+				if (chars[b & 0xFF] == '\n') continue;
+			}
+			if (classes[b & 0xFF] == LINE_TERMINATOR) {
+				skipLF = (chars[b & 0xFF] == '\r');
+				return true;
+			}
+			if (length == line.length) {
+				byte[] grown = new byte[length * 2];
+				System.arraycopy(line, 0, grown, 0, length);
+				line = grown;
+			}
+			line[length++] = b;
+		}
+	}
+	
+	/** Finds the boundaries of the current line, as trimming it and splitting it on arabic boundaries would do. */
+	private void startLine() {
+		int start = 0;
+		while (start < length && chars[line[start] & 0xFF] <= ' ') start++;
+		end = length;
+		while (end > start && chars[line[end - 1] & 0xFF] <= ' ') end--;
+		boolean hasLetter = false;
+		for (int i = start ; i < end && !hasLetter ; i++) hasLetter = classes[line[i] & 0xFF] >= LETTER;
+		wholeLine = !hasLetter;
+		emptyToken = hasLetter && classes[line[start] & 0xFF] < LETTER;
+		position = start;
+	}
+	
+	/** Reads the next token or the beginning of the next line.
+	 * @return {@link #END}, {@link #LINE}, {@link #ARABIC} or {@link #OTHER}
+	 * @throws IOException If the stream can not be read
+	 */
+	int next() throws IOException {
+		tokenString = null;
+		transliteredString = null;
+		while (true) {
+			if (position < 0) {
+				if (!readLine()) return END;
+				lineNumber++;
+				startLine();
+				return LINE;
+			}
+			//the line, with its white spaces collapsed, is the only token
+			if (wholeLine) {
+				int tokenLength = 0;
+				boolean space = false;
+				for (int i = position ; i < end ; i++) {
+					byte cl = classes[line[i] & 0xFF];
+					if (cl == SPACE || cl == LINE_TERMINATOR) {
+						space = true;
+						continue;
+					}
+					if (space) appendToken(tokenLength++, ' ');
+					space = false;
+					appendToken(tokenLength++, chars[line[i] & 0xFF]);
+				}
+				tokenString = new String(token, 0, tokenLength);
+				position = -1;
+				return OTHER;
+			}
+			if (emptyToken) {
+				emptyToken = false;
+				tokenString = "";
+				return OTHER;
+			}
+			while (position < end && classes[line[position] & 0xFF] < LETTER) position++;
+			if (position == end) {
+				position = -1;
+				continue;
+			}
+			int tokenLength = 0;
+			int transliteredLength = 0;
+			boolean arabic = true;
+			for ( ; position < end ; position++) {
+				int b = line[position] & 0xFF;
+				if (classes[b] < LETTER) break;
+				if (classes[b] == OTHER_LETTER) arabic = false;
+				appendToken(tokenLength++, chars[b]);
+				if (romans[b] != Transliterator.STRIP) {
+					if (transliteredLength == translitered.length) translitered = grow(translitered);
+					translitered[transliteredLength++] = romans[b];
+				}
+			}
+			tokenString = new String(token, 0, tokenLength);
+			if (!arabic) return OTHER;
+			transliteredString = new String(translitered, 0, transliteredLength);
+			return ARABIC;
+		}
+	}
+	
+	private void appendToken(int tokenLength, char c) {
+		if (tokenLength == token.length) token = grow(token);
+		token[tokenLength] = c;
+	}
+	
+	private static char[] grow(char[] array) {
+		char[] grown = new char[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+	
+	/** Returns the token read by the last call to {@link #next()}.
+	 * @return The token
+	 */
+	String getToken() { return tokenString; }
+	
+	/** Returns the transliteration of the token read by the last call to {@link #next()}.
+	 * @return The transliteration or <CODE>null</CODE> if the token is not made of arabic letters
+	 */
+	String getTranslitered() { return transliteredString; }
+	
+	/** Returns the number of the current line.
+	 * @return The line number
+	 */
+	int getLineNumber() { return lineNumber; }
+	
+	/** Closes the stream.
+	 * @throws IOException If the stream can not be closed
+	 */
+	void close() throws IOException {
+		in.close();
+	}
+	
+}
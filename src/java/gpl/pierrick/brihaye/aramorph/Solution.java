@@ -56,6 +56,10 @@ public class Solution {
 	protected LinkedList stemsGlosses;
 	/* The suffixes glosses.*/
 	protected LinkedList suffixesGlosses;
+	/* The {@link SolutionsFile#reference(int, int, int) references} of the prefix, stem and suffix entries, <CODE>-1</CODE> if unknown.*/
+	long prefixReference = -1;
+	long stemReference = -1;
+	long suffixReference = -1;
 	
 	/** Constructs a solution for a word. Note that the prefix, stem and suffix combination is <STRONG>recomputed</STRONG> 
 	 * and may not necessarily match with the information provided by the dictionaries.	 
@@ -883,6 +887,22 @@ public class Solution {
 	 */
 	public int getCnt() { return this.cnt; }
 	
+	/** Sets the {@link SolutionsFile#reference(int, int, int) references} of the prefix, stem and suffix entries.
+	 * @param prefixReference The reference of the prefix entry
+	 * @param stemReference The reference of the stem entry
+	 * @param suffixReference The reference of the suffix entry
+	 */
+	void setReferences(long prefixReference, long stemReference, long suffixReference) {
+		this.prefixReference = prefixReference;
+		this.stemReference = stemReference;
+		this.suffixReference = suffixReference;
+	}
+	
+	/** Whether or not the references of the entries are known.
+	 * @return The result
+	 */
+	boolean hasReferences() { return this.prefixReference != -1 && this.stemReference != -1 && this.suffixReference != -1; }
+	
 	/** Returns the lemma id in the stems dictionary.
 	 * @return The lemma ID
 	 */
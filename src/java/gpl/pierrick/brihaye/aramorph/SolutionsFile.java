@@ -0,0 +1,331 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/** A file of analyzed words and of their solutions, so that a restarted application does not have to analyze them again.
+ * <P>A solution is stored as the {@link #reference(int, int, int) references} of its prefix, stem and suffix entries,
+ * not as strings : the file is small and the solutions are rebuilt from the dictionaries in use. The file is thus only valid
+ * for the dictionaries it has been written with : it records their checksum, as computed by
+ * {@link DictionarySnapshot#computeSourceChecksum()}, and is ignored when they have changed.</P>
+ * <P>The file starts with a header :
+ * <PRE>magic (int), version (int), dictionary checksum (long), slots (int), words (int), payload length (int), payload checksum (long)</PRE>
+ * The payload starts with an open addressing index of the {@link PackedWord packed} words : for each slot, the word (long)
+ * and the offset (int) of its solutions in the data that follow. For each word, the data give the number of solutions (int),
+ * <CODE>0</CODE> if the word has no solution at all, then the 3 references (long) of each solution, by order of number.</P>
+ * <P>The file is memory-mapped and read in place by absolute positions, so that it can be shared by several threads.
+ * It is written in a temporary file, then renamed. Some platforms do not replace a file that is mapped : the new file is
+ * then kept aside, as the next generation, and replaces the old one at the next startup, before it is mapped.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class SolutionsFile {
+	
+	/** The system property giving the path of the file. When it is not set, the solutions are not saved. */
+	static final String FILE_PROPERTY = "aramorph.solutions.cache.file";
+	/** "ARSC" */
+	private static final int MAGIC = 0x41525343;
+	/** Bump it whenever the layout changes. */
+	static final int VERSION = 1;
+	/** magic + version + dictionary checksum + slots + words + payload length + payload checksum */
+	private static final int HEADER_LENGTH = 4 + 4 + 8 + 4 + 4 + 4 + 8;
+	/** word + offset */
+	private static final int SLOT_LENGTH = 8 + 4;
+	/** An empty slot. */
+	private static final long EMPTY = PackedWord.OVERFLOW;
+	
+	private final ByteBuffer buffer;
+	private final int slots;
+	private final int words;
+	/** The position of the data. */
+	private final int data;
+	private final StripedCounter hits = new StripedCounter();
+	private final StripedCounter misses = new StripedCounter();
+	
+	private SolutionsFile(ByteBuffer buffer, int slots, int words) {
+		this.buffer = buffer;
+		this.slots = slots;
+		this.words = words;
+		this.data = HEADER_LENGTH + slots * SLOT_LENGTH;
+	}
+	
+	/** Returns the reference of a dictionary entry.
+	 * @param index The index of its key in the lexicon
+	 * @param group The index of its {@link EntryGroups group} among those of the key
+	 * @param position Its position in the group
+	 * @return The reference or <CODE>-1</CODE> if the entry can not be referenced
+	 */
+	static long reference(int index, int group, int position) {
+		if (group > 0xFFFF || position > 0xFFFF) return -1;
+		return ((long)index << 32) | ((long)group << 16) | (long)position;
+	}
+	
+	/** Returns the entry of a reference among the groups of its key.
+	 * @param groups The groups
+	 * @param reference The reference
+	 * @return The entry
+	 */
+	private static DictionaryEntry getEntry(EntryGroups groups, long reference) {
+		return groups.getEntries((int)(reference >>> 16) & 0xFFFF)[(int)reference & 0xFFFF];
+	}
+	
+	private static int getIndex(long reference) {
+		return (int)(reference >>> 32);
+	}
+	
+	/** Returns the file that replaces a file at the next startup.
+	 * @param file The file
+	 * @return The next generation of the file
+	 */
+	private static File getNextGeneration(File file) {
+		return new File(file.getPath() + ".next");
+	}
+	
+	private static int hash(long key) {
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> 40);
+	}
+	
+	/** Opens a file and checks its header.
+	 * @param file The file
+	 * @param dictionaryChecksum The checksum of the dictionaries in use
+	 * @return The file or <CODE>null</CODE> if it does not exist, can not be read or is unusable
+	 */
+	static SolutionsFile open(File file, long dictionaryChecksum) {
+		//a file that could not replace the mapped one replaces it now
+		File next = getNextGeneration(file);
+		if (next.exists()) {
+			file.delete();
+			if (!next.renameTo(file)) {
+				System.out.println("Ignoring " + file + " : can not rename " + next + " to it");
+				return null;
+			}
+		}
+		if (!file.exists()) return null;
+		ByteBuffer buffer = null;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			raf.close(); //the mapping remains valid
+		}
+		catch (IOException e) {
+			System.out.println("Ignoring " + file + " : can not be opened (" + e.getMessage() + ")");
+			return null;
+		}
+		if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+			System.out.println("Ignoring " + file + " : not a solutions file");
+			return null;
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			System.out.println("Ignoring " + file + " : version " + version + " instead of " + VERSION);
+			return null;
+		}
+		long checksum = buffer.getLong();
+		int slots = buffer.getInt();
+		int words = buffer.getInt();
+		int payloadLength = buffer.getInt();
+		long payloadChecksum = buffer.getLong();
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate());
+		if (buffer.remaining() != payloadLength || crc.getValue() != payloadChecksum) {
+			System.out.println("Ignoring " + file + " : corrupted solutions file");
+			return null;
+		}
+		if (checksum != dictionaryChecksum) {
+			System.out.println("Ignoring " + file + " : stale solutions, the dictionaries have changed");
+			return null;
+		}
+		return new SolutionsFile(buffer, slots, words);
+	}
+	
+	/** Finds a word.
+	 * @param translitered The word
+	 * @return The position of its solutions, as expected by {@link #getCount(int)} and {@link #readSolutions(int, InMemoryDictionaryHandler, boolean)},
+	 * or <CODE>-1</CODE> if the word is not in the file
+	 */
+	int find(String translitered) {
+		long key = PackedWord.pack(translitered);
+		if (key != PackedWord.OVERFLOW) {
+			int mask = slots - 1;
+			int slot = hash(key) & mask;
+			long k;
+			while ((k = buffer.getLong(HEADER_LENGTH + slot * SLOT_LENGTH)) != EMPTY) {
+				if (k == key) {
+					hits.increment();
+					return data + buffer.getInt(HEADER_LENGTH + slot * SLOT_LENGTH + 8);
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+		misses.increment();
+		return -1;
+	}
+	
+	/** Returns the number of solutions of a word.
+	 * @param position The position of its solutions
+	 * @return The number of solutions
+	 */
+	int getCount(int position) {
+		return buffer.getInt(position);
+	}
+	
+	/** Rebuilds the solutions of a word from the dictionaries.
+	 * @param position The position of its solutions
+	 * @param dict The dictionaries
+	 * @param verbose Whether or not the solutions should output the dictionaries inconsistencies
+	 * @return The solutions or <CODE>null</CODE> if the word has no solution
+	 */
+	HashSet readSolutions(int position, InMemoryDictionaryHandler dict, boolean verbose) {
+		int count = getCount(position);
+		if (count == 0) return null;
+		HashSet solutions = new HashSet();
+		for (int s = 0 ; s < count ; s++) {
+			int at = position + 4 + 24 * s;
+			long prefixReference = buffer.getLong(at);
+			long stemReference = buffer.getLong(at + 8);
+			long suffixReference = buffer.getLong(at + 16);
+			Solution solution = new Solution(verbose, s + 1,
+				getEntry(dict.getPrefixGroups(getIndex(prefixReference)), prefixReference),
+				getEntry(dict.getStemGroups(getIndex(stemReference)), stemReference),
+				getEntry(dict.getSuffixGroups(getIndex(suffixReference)), suffixReference));
+			solution.setReferences(prefixReference, stemReference, suffixReference);
+			solutions.add(solution);
+		}
+		return solutions;
+	}
+	
+	/** Copies the words of the file.
+	 * @param words Where to copy the words that are not there yet, as expected by {@link #write(File, long, Map)}
+	 */
+	void copyTo(Map words) {
+		for (int slot = 0 ; slot < slots ; slot++) {
+			long key = buffer.getLong(HEADER_LENGTH + slot * SLOT_LENGTH);
+			if (key == EMPTY) continue;
+			Long word = new Long(key);
+			if (words.containsKey(word)) continue;
+			int position = data + buffer.getInt(HEADER_LENGTH + slot * SLOT_LENGTH + 8);
+			long[] references = new long[3 * getCount(position)];
+			for (int i = 0 ; i < references.length ; i++) references[i] = buffer.getLong(position + 4 + 8 * i);
+			words.put(word, references);
+		}
+	}
+	
+	/** Returns the number of words of the file.
+	 * @return The number of words
+	 */
+	int size() {
+		return words;
+	}
+	
+	/** Describes the counters of the file.
+	 * @return The description
+	 */
+	String getStatistics() {
+		return hits.get() + " words found, " + misses.get() + " missing, out of " + words + " words";
+	}
+	
+	/** Writes a file.
+	 * @param file The file
+	 * @param dictionaryChecksum The checksum of the dictionaries the references point to
+	 * @param words The words and the references of their solutions.
+	 * <PRE>key</PRE> = {@link PackedWord packed} word (<CODE>Long</CODE>)
+	 * <PRE>value</PRE> = the 3 references of each solution, by order of number (<CODE>long[]</CODE>), none if the word has no solution
+	 * @throws IOException If a problem occurs when writing the file
+	 */
+	static void write(File file, long dictionaryChecksum, Map words) throws IOException {
+		//keep the load factor under 2/3
+		int slots = 16;
+		while (2 * slots < 3 * (words.size() + 1)) slots <<= 1;
+		long[] keys = new long[slots];
+		Arrays.fill(keys, EMPTY);
+		int[] offsets = new int[slots];
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(data);
+		Iterator it = words.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry entry = (Map.Entry)it.next();
+			long key = ((Long)entry.getKey()).longValue();
+			long[] references = (long[])entry.getValue();
+			int slot = hash(key) & (slots - 1);
+			while (keys[slot] != EMPTY) slot = (slot + 1) & (slots - 1);
+			keys[slot] = key;
+			offsets[slot] = dataOut.size();
+			dataOut.writeInt(references.length / 3);
+			for (int i = 0 ; i < references.length ; i++) dataOut.writeLong(references[i]);
+		}
+		dataOut.flush();
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(slots * SLOT_LENGTH + data.size());
+		DataOutputStream out = new DataOutputStream(payload);
+		for (int slot = 0 ; slot < slots ; slot++) {
+			out.writeLong(keys[slot]);
+			out.writeInt(offsets[slot]);
+		}
+		data.writeTo(out);
+		out.flush();
+		byte[] bytes = payload.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		File temporary = new File(file.getPath() + ".tmp");
+		if (temporary.getParentFile() != null) temporary.getParentFile().mkdirs();
+		DataOutputStream header = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try {
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeLong(dictionaryChecksum);
+			header.writeInt(slots);
+			header.writeInt(words.size());
+			header.writeInt(bytes.length);
+			header.writeLong(crc.getValue());
+			header.write(bytes);
+		}
+		finally {
+			header.close();
+		}
+		//some platforms do not rename a file over an existing one
+		if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+			//the file is still mapped
+			File next = getNextGeneration(file);
+			next.delete();
+			if (!temporary.renameTo(next)) throw new IOException("Can not rename " + temporary + " to " + next);
+		}
+	}
+	
+}
@@ -0,0 +1,49 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+/** A lexicon whose keys are sorted : {@link #keys()} iterates over them in ascending order,
+ * and a key can be designated by its rank in this order, e.g. as given by a {@link KeyAutomaton}.
+ * @author Pierrick Brihaye, 2003
+ */
+interface SortedLexicon extends Lexicon {
+	
+	/** Returns the entries for the key of the given rank, grouped by category.
+	 * @param index The rank of the key
+	 * @return The groups
+	 */
+	EntryGroups getGroups(int index);
+	
+	/** Returns the rank of a key lying in a sequence of chars, without extracting it.
+	 * @param chars The chars
+	 * @param start The start of the key
+	 * @param end The end (exclusive) of the key
+	 * @return The rank or <CODE>-1</CODE> if the key is not in the lexicon
+	 */
+	int indexOf(CharSequence chars, int start, int end);
+	
+}
@@ -0,0 +1,83 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/** Folds the spellings that the alternative spellings of a word exchange : 'alif maqSuura and yaa', taa' marbuuTa and haa',
+ * hamza-on-waaw and waaw + hamza-on-the-line, hamza-on-yaa' and yaa' + hamza-on-the-line.
+ * <P>Every alternative spelling of a word has the same normalized form as the word. Since the folding is made char by char,
+ * the normalized form of a segmented word is made of the normalized forms of its prefix, stem and suffix :
+ * if the normalized word can not be segmented into normalized keys of the dictionaries, none of its alternative spellings can be.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+final class SpellingNormalizer {
+	
+	/** No instances. */
+	private SpellingNormalizer() {}
+	
+	/** Returns the normalized form of a romanized word.
+	 * @param translitered The word
+	 * @return The normalized word : 'Y' becomes 'y', 'p' becomes 'h', '&' becomes "w'" and '}' becomes "y'"
+	 */
+	static String normalize(String translitered) {
+		StringBuffer sb = null;
+		for (int i = 0 ; i < translitered.length() ; i++) {
+			char c = translitered.charAt(i);
+			String folded = null;
+			switch (c) {
+				case 'Y' : folded = "y"; break; //'alif maqSuura -> yaa'
+				case 'p' : folded = "h"; break; //taa' marbuuTa -> haa'
+				case '&' : folded = "w'"; break; //hamza-on-waaw -> waaw + hamza-on-the-line
+				case '}' : folded = "y'"; break; //hamza-on-yaa' -> yaa' + hamza-on-the-line
+			}
+			if (folded == null) {
+				if (sb != null) sb.append(c);
+			}
+			else {
+				if (sb == null) sb = new StringBuffer(translitered.length() + 4).append(translitered.substring(0, i));
+				sb.append(folded);
+			}
+		}
+		//nothing to fold
+		if (sb == null) return translitered;
+		return sb.toString();
+	}
+	
+	/** Returns the normalized forms of some keys.
+	 * @param keys An iterator on the keys
+	 * @return An iterator on their normalized forms, in ascending order and without duplicates
+	 */
+	static Iterator normalizedKeys(Iterator keys) {
+		TreeSet normalized = new TreeSet();
+		while (keys.hasNext()) normalized.add(normalize((String)keys.next()));
+		return normalized.iterator();
+	}
+	
+}
@@ -0,0 +1,274 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Generates the alternative spellings of a romanized word from a table of orthographic variation rules.
+ * <P>A {@link Rule rule} applies to the words with a given ending : the first rule whose ending matches is the only one applied.
+ * It is made of chains of {@link Step rewriting steps}. Each chain starts again from the word, each step rewrites the result
+ * of the previous one and, if it has changed something, may give it as an alternative spelling.</P>
+ * <P>The rules are compiled once : they are dispatched on the last char of the word, then rewritten by scanning its chars
+ * in a buffer. No regular expression is involved, and nothing is allocated but the alternative spellings.
+ * New rules, e.g. for dialects or OCR errors, only need to be added to a table.</P>
+ * <P>Instances are not thread-safe : each thread should have its own.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+final class SpellingRules {
+	
+	/** Rewrites the first occurrence of a string. */
+	static final int FIRST = 0;
+	/** Rewrites every occurrence of a string. */
+	static final int EVERY = 1;
+	/** Rewrites the end of the word. */
+	static final int FINAL = 2;
+	
+	/** A rewriting step. */
+	static final class Step {
+		
+		final int kind;
+		final String from;
+		final String to;
+		/** Whether or not the rewritten word is an alternative spelling. */
+		final boolean emit;
+		
+		/** Constructs a step.
+		 * @param kind {@link SpellingRules#FIRST}, {@link SpellingRules#EVERY} or {@link SpellingRules#FINAL}
+		 * @param from The string to be rewritten
+		 * @param to Its rewriting
+		 * @param emit Whether or not the rewritten word is an alternative spelling, provided that something has been rewritten
+		 */
+		Step(int kind, String from, String to, boolean emit) {
+			if (from.length() == 0) throw new RuntimeException("Nothing to rewrite");
+			this.kind = kind;
+			this.from = from;
+			this.to = to;
+			this.emit = emit;
+		}
+		
+	}
+	
+	/** A rule : chains of rewriting steps for the words with a given ending. */
+	static final class Rule {
+		
+		/** The ending of the words, or <CODE>""</CODE> for any word. */
+		final String ending;
+		final Step[][] chains;
+		
+		/** Constructs a rule.
+		 * @param ending The ending of the words, or <CODE>""</CODE> for any word
+		 * @param chains The chains of steps
+		 */
+		Rule(String ending, Step[][] chains) {
+			this.ending = ending;
+			this.chains = chains;
+		}
+		
+	}
+	
+	//'alif maqSuura -> yaa'
+	private static final Step Y_TO_y = new Step(EVERY, "Y", "y", true);
+	private static final Step Y_TO_y_SILENTLY = new Step(EVERY, "Y", "y", false);
+	//medial waaw + hamza-on-the-line -> hamza-on-waaw
+	private static final Step HAMZA_ON_WAAW = new Step(FIRST, "w'", "&", true);
+	//final yaa' + hamza-on-the-line -> hamza-on-yaa'
+	private static final Step[][] FINAL_HAMZA = {
+		{ Y_TO_y, HAMZA_ON_WAAW }, // y_w'_y', y_&__y'
+		{ Y_TO_y_SILENTLY, new Step(FINAL, "y'", "}", true), HAMZA_ON_WAAW } // y_w'_}, y_&__}
+	};
+	
+	/** The rules of the Buckwalter analyzer. */
+	private static final Rule[] BUCKWALTER_RULES = {
+		//final 'alif maqSuura + hamza-on-the-line
+		new Rule("Y'", FINAL_HAMZA),
+		//final yaa' + hamza-on-the-line
+		new Rule("y'", FINAL_HAMZA),
+		//final yaa'
+		new Rule("y", new Step[][] {
+			{ Y_TO_y_SILENTLY, HAMZA_ON_WAAW }, // y_&__y
+			//final yaa' -> 'alif maqSuura
+			{ Y_TO_y_SILENTLY, new Step(FINAL, "y", "Y", true), HAMZA_ON_WAAW } // y_w'_Y, y_&__Y
+		}),
+		//final haa' -> taa' marbuuTa
+		new Rule("h", new Step[][] {
+			{ Y_TO_y, HAMZA_ON_WAAW, new Step(FINAL, "h", "p", true) } // y_w'_h, y_&__h, y_&__p
+		}),
+		//final taa' marbuuTa -> haa'
+		new Rule("p", new Step[][] {
+			{ Y_TO_y, HAMZA_ON_WAAW, new Step(FINAL, "p", "h", true) } // y_w'_p, y_&__p, y_&__h
+		}),
+		//any other word
+		new Rule("", new Step[][] {
+			{ Y_TO_y, HAMZA_ON_WAAW } // y_w'__, y_&___
+		})
+	};
+	
+	/** The rules that may apply to the words ending with each ASCII char, in the order of the table. */
+	private final Rule[][] rulesByLastChar = new Rule[128][];
+	/** The rules that may apply to the other words. */
+	private final Rule[] otherRules;
+	
+	private char[] buffer = new char[32];
+	private char[] scratch = new char[32];
+	private int length = 0;
+	
+	/** Compiles a table of rules.
+	 * @param rules The rules, by order of precedence
+	 */
+	SpellingRules(Rule[] rules) {
+		ArrayList others = new ArrayList();
+		for (int i = 0 ; i < rules.length ; i++) {
+			if (rules[i].ending.length() == 0) others.add(rules[i]);
+		}
+		otherRules = (Rule[])others.toArray(new Rule[others.size()]);
+		for (int c = 0 ; c < 128 ; c++) {
+			ArrayList candidates = new ArrayList();
+			for (int i = 0 ; i < rules.length ; i++) {
+				String ending = rules[i].ending;
+				if (ending.length() == 0 || ending.charAt(ending.length() - 1) == c) candidates.add(rules[i]);
+			}
+			rulesByLastChar[c] = (Rule[])candidates.toArray(new Rule[candidates.size()]);
+		}
+	}
+	
+	/** Compiles the rules of the Buckwalter analyzer, for use by a single thread.
+	 * @return The rules
+	 */
+	static SpellingRules getDefault() {
+		return new SpellingRules(BUCKWALTER_RULES);
+	}
+	
+	/** Generates the alternative spellings of a word.
+	 * @param translitered The word
+	 * @param alternatives Where to add the alternative spellings, in the order of the rule. The same spelling may be added several times
+	 * @return The number of alternative spellings added
+	 */
+	int getAlternativeSpellings(String translitered, List alternatives) {
+		int size = alternatives.size();
+		Rule rule = findRule(translitered);
+		if (rule == null) return 0;
+		for (int c = 0 ; c < rule.chains.length ; c++) {
+			Step[] chain = rule.chains[c];
+			reset(translitered);
+			for (int s = 0 ; s < chain.length ; s++) {
+				if (rewrite(chain[s]) && chain[s].emit) alternatives.add(new String(buffer, 0, length));
+			}
+		}
+		return alternatives.size() - size;
+	}
+	
+	private Rule findRule(String translitered) {
+		Rule[] candidates = otherRules;
+		if (translitered.length() > 0) {
+			char last = translitered.charAt(translitered.length() - 1);
+			if (last < 128) candidates = rulesByLastChar[last];
+		}
+		for (int i = 0 ; i < candidates.length ; i++) {
+			if (translitered.endsWith(candidates[i].ending)) return candidates[i];
+		}
+		return null;
+	}
+	
+	private void reset(String translitered) {
+		length = translitered.length();
+		if (buffer.length < length) {
+			buffer = new char[length * 2];
+			scratch = new char[length * 2];
+		}
+		translitered.getChars(0, length, buffer, 0);
+	}
+	
+	/** Applies a step to the buffer.
+	 * @param step The step
+	 * @return Whether or not something has been rewritten
+	 */
+	private boolean rewrite(Step step) {
+		switch (step.kind) {
+			case FINAL :
+				if (!endsWith(step.from)) return false;
+				replace(length - step.from.length(), step.from.length(), step.to);
+				return true;
+			case FIRST :
+				int at = indexOf(step.from, 0);
+				if (at == -1) return false;
+				replace(at, step.from.length(), step.to);
+				return true;
+			case EVERY :
+				boolean rewritten = false;
+				for (int i = indexOf(step.from, 0) ; i != -1 ; i = indexOf(step.from, i + step.to.length())) {
+					replace(i, step.from.length(), step.to);
+					rewritten = true;
+				}
+				return rewritten;
+			default :
+				throw new RuntimeException("Unknown step : " + step.kind);
+		}
+	}
+	
+	private boolean endsWith(String s) {
+		int start = length - s.length();
+		if (start < 0) return false;
+		for (int i = 0 ; i < s.length() ; i++) {
+			if (buffer[start + i] != s.charAt(i)) return false;
+		}
+		return true;
+	}
+	
+	private int indexOf(String s, int from) {
+		int max = length - s.length();
+		char first = s.charAt(0);
+		for (int i = from ; i <= max ; i++) {
+			if (buffer[i] != first) continue;
+			int j = 1;
+			while (j < s.length() && buffer[i + j] == s.charAt(j)) j++;
+			if (j == s.length()) return i;
+		}
+		return -1;
+	}
+	
+	/** Replaces some chars of the buffer.
+	 * @param start Where the chars start
+	 * @param count How many chars are replaced
+	 * @param s The replacement
+	 */
+	private void replace(int start, int count, String s) {
+		int newLength = length - count + s.length();
+		if (s.length() != count) {
+			if (scratch.length < newLength) scratch = new char[newLength * 2];
+			System.arraycopy(buffer, 0, scratch, 0, start);
+			System.arraycopy(buffer, start + count, scratch, start + s.length(), length - start - count);
+			char[] swap = buffer;
+			buffer = scratch;
+			scratch = (swap.length < newLength) ? new char[newLength * 2] : swap;
+		}
+		s.getChars(0, s.length(), buffer, start);
+		length = newLength;
+	}
+	
+}
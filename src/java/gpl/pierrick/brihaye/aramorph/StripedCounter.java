@@ -0,0 +1,84 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A counter that many threads can increment without contending for it. Each thread adds to one of several cells,
+ * each on its own cache line, and the cells are summed when the counter is read.
+ * @author Pierrick Brihaye, 2003
+ */
+class StripedCounter {
+	
+	/** The number of cells : a power of 2, twice the number of processors at least. */
+	static final int STRIPES;
+	/** The distance, in longs, between two cells, so that they are not on the same cache line. */
+	private static final int SPACING = 8;
+	
+	static {
+		int stripes = 1;
+		while (stripes < 2 * Runtime.getRuntime().availableProcessors()) stripes <<= 1;
+		STRIPES = stripes;
+	}
+	
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+	
+	/** Returns the stripe of the current thread.
+	 * @return The stripe, between <CODE>0</CODE> and {@link #STRIPES} (exclusive)
+	 */
+	static int stripe() {
+		long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 32) & (STRIPES - 1);
+	}
+	
+	/** Returns the cell of the current thread. */
+	private static int cell() {
+		return stripe() * SPACING;
+	}
+	
+	/** Adds one to the counter. */
+	void increment() {
+		cells.getAndIncrement(cell());
+	}
+	
+	/** Adds a number to the counter.
+	 * @param delta The number
+	 */
+	void add(long delta) {
+		cells.getAndAdd(cell(), delta);
+	}
+	
+	/** Returns the value of the counter. The increments made while it is read may be missed.
+	 * @return The value
+	 */
+	long get() {
+		long sum = 0;
+		for (int i = 0 ; i < STRIPES ; i++) sum += cells.get(i * SPACING);
+		return sum;
+	}
+	
+}
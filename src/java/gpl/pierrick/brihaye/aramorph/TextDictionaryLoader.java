@@ -0,0 +1,482 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/** Loads the text dictionaries avalaible in the classpath.
+ * <P>The 6 resources are read concurrently and the lexicons are cut into chunks, aligned on lemmas, that
+ * are parsed in parallel on a fork-join pool. Lines are scanned by hand rather than with regular expressions
+ * and glosses are cleaned up in a single pass. The chunks are finally merged in the order of the resources,
+ * so that the dictionaries are the same than if they had been read line by line.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class TextDictionaryLoader {
+	
+	/** Chunks smaller than this (in chars) are not split anymore. */
+	private static final int CHUNK_SIZE = 1 << 16;
+	
+	/** Replacements for upper-ASCII chars in glosses (they don't convert well to UTF-8).
+	 * <CODE>null</CODE> when the char is kept as is.
+	 */
+	private static final String[] FOLDINGS = new String[0x180];
+	
+	static {
+		fold("\u00C0\u00C1\u00C2\u00C3\u00C4\u00C5", "A");
+		fold("\u00C7", "C");
+		fold("\u00C8\u00C9\u00CA\u00CB", "E");
+		fold("\u00CC\u00CD\u00CE\u00CF", "I");
+		fold("\u00D1", "N");
+		fold("\u00D2\u00D3\u00D4\u00D5\u00D6", "O");
+		fold("\u00D9\u00DA\u00DB\u00DC", "U");
+		fold("\u00E0\u00E1\u00E2\u00E3\u00E4\u00E5", "a");
+		fold("\u00E7", "c");
+		fold("\u00E8\u00E9\u00EA\u00EB", "e");
+		fold("\u00EC\u00ED\u00EE\u00EF", "i");
+		fold("\u00F1", "n");
+		fold("\u00F2\u00F3\u00F4\u00F5\u00F6", "o");
+		fold("\u00F9\u00FA\u00FB\u00FC", "u");
+		fold("\u00C6", "AE");
+		fold("\u0160", "Sh");
+		fold("\u017D", "Zh");
+		fold("\u00DF", "ss");
+		fold("\u00E6", "ae");
+		fold("\u0161", "sh");
+		fold("\u017E", "zh");
+		fold(";", "/"); //TODO : is it necessary ?
+	}
+	
+	private static void fold(String chars, String replacement) {
+		for (int i = 0 ; i < chars.length() ; i++) FOLDINGS[chars.charAt(i)] = replacement;
+	}
+	
+	/** No instances. */
+	private TextDictionaryLoader() {}
+	
+	/** Loads the 3 lexicons and the 3 compatibility tables.
+	 * @param prefixes Dictionary of prefixes
+	 * @param stems Dictionary of stems
+	 * @param suffixes Dictionary of suffixes
+	 * @param AB Compatibility table for prefixes-stems combinations
+	 * @param AC Compatibility table for prefixes-suffixes combinations
+	 * @param BC Compatibility table for stems-suffixes combinations
+	 * @throws RuntimeException If a problem occurs when reading the dictionaries
+	 */
+	static void load(Map prefixes, Map stems, Map suffixes, Set AB, Set AC, Set BC) throws RuntimeException {
+		final DictionaryTask[] dictionaries = {
+			new DictionaryTask("dictPrefixes"),
+			new DictionaryTask("dictStems"),
+			new DictionaryTask("dictSuffixes")
+		};
+		final TableTask[] tables = {
+			new TableTask("tableAB"),
+			new TableTask("tableAC"),
+			new TableTask("tableBC")
+		};
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			pool.invoke(new RecursiveAction() {
+				protected void compute() {
+					ArrayList tasks = new ArrayList();
+					tasks.addAll(Arrays.asList(dictionaries));
+					tasks.addAll(Arrays.asList(tables));
+					invokeAll(tasks);
+				}
+			});
+		}
+		finally {
+			pool.shutdown();
+		}
+		merge(prefixes, dictionaries[0]);
+		merge(stems, dictionaries[1]);
+		merge(suffixes, dictionaries[2]);
+		merge(AB, tables[0]);
+		merge(AC, tables[1]);
+		merge(BC, tables[2]);
+	}
+	
+	/** Adds the parsed entries to a dictionary, in the order of the resource.
+	 * @param set The dictionary
+	 * @param task The parsing task
+	 * @throws RuntimeException If a lemma isn't unique
+	 */
+	private static void merge(Map set, DictionaryTask task) throws RuntimeException {
+		Chunk chunk = (Chunk)task.getRawResult();
+		HashSet lemmas = new HashSet(chunk.lemmas.size() * 2);
+		for (int i = 0 ; i < chunk.lemmas.size() ; i++) {
+			String lemmaID = (String)chunk.lemmas.get(i);
+			// lemmaID's must be unique
+			if (!lemmas.add(lemmaID))
+				throw new RuntimeException("Lemma " + lemmaID + "in " + task.name + " (line " + chunk.lemmaLines[i] + ") isn't unique");
+		}
+		for (int i = 0 ; i < chunk.keys.size() ; i++) {
+			//MultiHashMap adds the value to the key's collection
+			set.put(chunk.keys.get(i), chunk.entries.get(i));
+		}
+		System.out.println("Loading dictionary : " + task.name);
+		if (!lemmas.isEmpty()) System.out.print(lemmas.size() + " lemmas and ");
+		System.out.println(set.size() + " entries totalizing " + chunk.entries.size() + " forms");
+	}
+	
+	/** Adds the parsed combinations to a compatibility table.
+	 * @param set The table
+	 * @param task The parsing task
+	 */
+	private static void merge(Set set, TableTask task) {
+		set.addAll((ArrayList)task.getRawResult());
+		System.out.println("Loading compatibility table : " + task.name);
+		System.out.println(set.size() + " entries");
+	}
+	
+	/** Reads a resource from the <CODE>dictionaries</CODE> directory.
+	 * @param name The resource name
+	 * @return The content of the resource
+	 * @throws RuntimeException If a problem occurs when reading the resource
+	 */
+	private static String readResource(String name) throws RuntimeException {
+		InputStream is = TextDictionaryLoader.class.getResourceAsStream("dictionaries/" + name);
+		if (is == null) throw new RuntimeException("Can not open : " + name);
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 16);
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = is.read(buffer)) != -1) bos.write(buffer, 0, read);
+			is.close();
+			return bos.toString("ISO8859_1");
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Can not open : " + name);
+		}
+	}
+	
+	/** Returns the end of the line starting at the given position.
+	 * @param text The text
+	 * @param start The start of the line
+	 * @param end The end of the text
+	 * @return The position of the line terminator or <CODE>end</CODE>
+	 */
+	private static int lineEnd(String text, int start, int end) {
+		for (int i = start ; i < end ; i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r') return i;
+		}
+		return end;
+	}
+	
+	/** Returns the start of the next line.
+	 * @param text The text
+	 * @param lineEnd The end of the current line, as returned by {@link #lineEnd(String, int, int)}
+	 * @param end The end of the text
+	 * @return The start of the next line
+	 */
+	private static int nextLine(String text, int lineEnd, int end) {
+		if (lineEnd >= end) return end;
+		//"\r\n" is a single terminator
+		if (text.charAt(lineEnd) == '\r' && lineEnd + 1 < end && text.charAt(lineEnd + 1) == '\n') return lineEnd + 2;
+		return lineEnd + 1;
+	}
+	
+	/** Counts the lines between two positions.
+	 * @param text The text
+	 * @param start The start of the first line
+	 * @param end The start of the line following the last one
+	 * @return The number of lines
+	 */
+	private static int countLines(String text, int start, int end) {
+		int lines = 0;
+		while (start < end) {
+			start = nextLine(text, lineEnd(text, start, end), end);
+			lines++;
+		}
+		return lines;
+	}
+	
+	/** Parses a dictionary entry line.
+	 * @param name A human-readable name
+	 * @param lineNumber The line number
+	 * @param lemmaID The current lemma
+	 * @param line The line
+	 * @return The entry
+	 * @throws RuntimeException If the line is not a valid entry
+	 */
+	static DictionaryEntry parseEntry(String name, int lineNumber, String lemmaID, String line) throws RuntimeException {
+		int tab1 = line.indexOf('\t');
+		int tab2 = (tab1 == -1) ? -1 : line.indexOf('\t', tab1 + 1);
+		int tab3 = (tab2 == -1) ? -1 : line.indexOf('\t', tab2 + 1);
+		//a little error-checking won't hurt :
+		if (tab3 == -1 || line.indexOf('\t', tab3 + 1) != -1) {
+			throw new RuntimeException("Entry in " + name + " (line " + lineNumber + ") doesn't have 4 fields (3 tabs)");
+		}
+		String entry = line.substring(0, tab1); // get the entry for use as key
+		String vocalization = line.substring(tab1 + 1, tab2);
+		String morphology = line.substring(tab2 + 1, tab3);
+		String glossPOS = line.substring(tab3 + 1);
+	
+		// two ways to get the POS info:
+		// (1) explicitly, by extracting it from the gloss field:
+		String POS = extractPOS(glossPOS);
+		// (2) by deduction: use the morphology (and sometimes the voc and gloss) to deduce the appropriate POS
+		if (POS == null) {
+			// null prefix or suffix
+			if ("Pref-0".equals(morphology) || "Suff-0".equals(morphology)) {
+				POS = "";
+			}
+			else if (morphology.startsWith("F")) {
+				POS = vocalization + "/FUNC_WORD";
+			}
+			else if (morphology.startsWith("IV")) {
+				POS = vocalization + "/VERB_IMPERFECT";
+			}
+			else if (morphology.startsWith("PV")) {
+				POS = vocalization + "/VERB_PERFECT";
+			}
+			else if (morphology.startsWith("CV")) {
+				POS = vocalization + "/VERB_IMPERATIVE";
+			}
+			else if (morphology.startsWith("N")) {
+				// educated guess (99% correct) : we need the gloss to guess proper names
+				if (glossPOS.length() > 0 && glossPOS.charAt(0) >= 'A' && glossPOS.charAt(0) <= 'Z') {
+					POS = vocalization + "/NOUN_PROP";
+				}
+				// (was NOUN_ADJ: some of these are really ADJ's and need to be tagged manually)
+				else
+					POS = vocalization + "/NOUN";
+			}
+			else {
+				throw new RuntimeException("No POS can be deduced in " + name + " (line " + lineNumber + ")");
+			}
+		}
+		// note that although we read 4 fields from the dict we now save 5 fields in the hash table
+		// because the info in last field, glossPOS, was split into two: gloss and POS
+		return new DictionaryEntry(entry, lemmaID, vocalization, morphology, cleanGloss(glossPOS), POS);
+	}
+	
+	/** Extracts the POS info from a gloss field, i.e. the content of the last <CODE>&lt;pos&gt;</CODE> element.
+	 * @param glossPOS The gloss field
+	 * @return The POS info or <CODE>null</CODE> if there is none
+	 */
+	static String extractPOS(String glossPOS) {
+		int open = glossPOS.lastIndexOf("<pos>");
+		while (open != -1) {
+			//the POS info can't be empty
+			int close = glossPOS.indexOf("</pos>", open + 6);
+			if (close != -1) return glossPOS.substring(open + 5, close);
+			open = (open == 0) ? -1 : glossPOS.lastIndexOf("<pos>", open - 1);
+		}
+		return null;
+	}
+	
+	/** Cleans up a gloss : removes the POS info and extra space, and converts upper-ASCII to lower.
+	 * @param glossPOS The gloss field
+	 * @return The gloss
+	 */
+	static String cleanGloss(String glossPOS) {
+		String gloss = glossPOS;
+		int open = gloss.indexOf("<pos>");
+		if (open != -1) {
+			int close = gloss.indexOf("</pos>", open + 6);
+			if (close != -1) gloss = gloss.substring(0, open) + gloss.substring(close + 6);
+		}
+		gloss = gloss.trim();
+		StringBuffer sb = null;
+		for (int i = 0 ; i < gloss.length() ; i++) {
+			char c = gloss.charAt(i);
+			String replacement = (c < FOLDINGS.length) ? FOLDINGS[c] : null;
+			if (replacement != null) {
+				if (sb == null) {
+					sb = new StringBuffer(gloss.length() + 8);
+					sb.append(gloss.substring(0, i));
+				}
+				sb.append(replacement);
+			}
+			else if (sb != null) sb.append(c);
+		}
+		return (sb == null) ? gloss : sb.toString();
+	}
+	
+	/** Normalizes a compatibility table line : trims it and collapses its white space.
+	 * @param line The line
+	 * @return The normalized line
+	 */
+	static String normalizeCombination(String line) {
+		line = line.trim();
+		StringBuffer sb = new StringBuffer(line.length());
+		boolean inSpace = false;
+		for (int i = 0 ; i < line.length() ; i++) {
+			char c = line.charAt(i);
+			if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+				if (!inSpace) sb.append(' ');
+				inSpace = true;
+			}
+			else {
+				sb.append(c);
+				inSpace = false;
+			}
+		}
+		return sb.toString();
+	}
+	
+	/** The entries parsed from a part of a dictionary, in the order of the resource. */
+	private static class Chunk {
+		private ArrayList keys = new ArrayList();
+		private ArrayList entries = new ArrayList();
+		private ArrayList lemmas = new ArrayList();
+		private int[] lemmaLines = new int[16];
+	
+		private void addLemma(String lemmaID, int lineNumber) {
+			if (lemmas.size() == lemmaLines.length) {
+				int[] grown = new int[lemmaLines.length * 2];
+				System.arraycopy(lemmaLines, 0, grown, 0, lemmaLines.length);
+				lemmaLines = grown;
+			}
+			lemmaLines[lemmas.size()] = lineNumber;
+			lemmas.add(lemmaID);
+		}
+	
+		private void append(Chunk next) {
+			for (int i = 0 ; i < next.lemmas.size() ; i++) addLemma((String)next.lemmas.get(i), next.lemmaLines[i]);
+			keys.addAll(next.keys);
+			entries.addAll(next.entries);
+		}
+	}
+	
+	/** Reads and parses a dictionary. */
+	private static class DictionaryTask extends RecursiveTask {
+		private static final long serialVersionUID = 1L;
+	
+		private String name;
+	
+		private DictionaryTask(String name) {
+			this.name = name;
+		}
+	
+		protected Object compute() {
+			String text = readResource(name);
+			return new ChunkTask(name, text, 0, text.length(), 1).compute();
+		}
+	}
+	
+	/** Parses a part of a dictionary, splitting it on lemma boundaries when it is large enough. */
+	private static class ChunkTask extends RecursiveTask {
+		private static final long serialVersionUID = 1L;
+	
+		private String name;
+		private String text;
+		private int start;
+		private int end;
+		private int firstLine;
+	
+		private ChunkTask(String name, String text, int start, int end, int firstLine) {
+			this.name = name;
+			this.text = text;
+			this.start = start;
+			this.end = end;
+			this.firstLine = firstLine;
+		}
+	
+		protected Object compute() {
+			if (end - start > CHUNK_SIZE) {
+				//split on a lemma, so that both halves know their lemmaID
+				int middle = text.indexOf("\n;; ", start + (end - start) / 2);
+				if (middle != -1 && middle + 1 < end) {
+					middle++;
+					int middleLine = firstLine + countLines(text, start, middle);
+					ChunkTask left = new ChunkTask(name, text, start, middle, firstLine);
+					ChunkTask right = new ChunkTask(name, text, middle, end, middleLine);
+					left.fork();
+					Chunk rightChunk = (Chunk)right.compute();
+					Chunk leftChunk = (Chunk)left.join();
+					leftChunk.append(rightChunk);
+					return leftChunk;
+				}
+			}
+			return parse();
+		}
+	
+		private Chunk parse() throws RuntimeException {
+			Chunk chunk = new Chunk();
+			String lemmaID = "";
+			int lineNumber = firstLine;
+			int position = start;
+			while (position < end) {
+				int lineEnd = lineEnd(text, position, end);
+				String line = text.substring(position, lineEnd);
+				// new lemma
+				if (line.startsWith(";; ")) {
+					lemmaID = line.substring(3);
+					chunk.addLemma(lemmaID, lineNumber);
+				}
+				// comment
+				else if (line.startsWith(";")) {}
+				else {
+					chunk.entries.add(parseEntry(name, lineNumber, lemmaID, line));
+					chunk.keys.add(line.substring(0, line.indexOf('\t')));
+				}
+				position = nextLine(text, lineEnd, end);
+				lineNumber++;
+			}
+			return chunk;
+		}
+	}
+	
+	/** Reads and parses a compatibility table. */
+	private static class TableTask extends RecursiveTask {
+		private static final long serialVersionUID = 1L;
+	
+		private String name;
+	
+		private TableTask(String name) {
+			this.name = name;
+		}
+	
+		protected Object compute() {
+			String text = readResource(name);
+			ArrayList combinations = new ArrayList();
+			int position = 0;
+			while (position < text.length()) {
+				int lineEnd = lineEnd(text, position, text.length());
+				String line = text.substring(position, lineEnd);
+				if (!line.startsWith(";")) { //Ignore comments
+					combinations.add(normalizeCombination(line));
+				}
+				position = nextLine(text, lineEnd, text.length());
+			}
+			return combinations;
+		}
+	}
+	
+}
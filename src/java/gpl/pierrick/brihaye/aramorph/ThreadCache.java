@@ -0,0 +1,115 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+/** A small cache of the values of {@link PackedWord packed} words, for the use of a single thread, in front of a shared one.
+ * <P>The cache is direct-mapped : each word has a single slot, where it replaces the previous one. Looking a word up or
+ * caching it allocates nothing and touches nothing but the memory of the thread, so that the most frequent words
+ * do not contend for the shared cache.</P>
+ * <P>Instances are not thread-safe, except for reading their {@link Counters counters}.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class ThreadCache {
+	
+	/** The hits and misses of a cache. They are written by its thread only, without synchronization : the other
+	 * threads may read them late.
+	 */
+	static class Counters {
+		private long hits = 0;
+		private long misses = 0;
+		
+		long getHits() {
+			return hits;
+		}
+		
+		long getMisses() {
+			return misses;
+		}
+	}
+	
+	private final long[] keys;
+	private final Object[] values;
+	private final int mask;
+	private final Counters counters = new Counters();
+	
+	/** Constructs an empty cache.
+	 * @param capacity The number of slots. It is rounded up to a power of 2
+	 */
+	ThreadCache(int capacity) {
+		int slots = getSlots(capacity);
+		keys = new long[slots];
+		values = new Object[slots];
+		mask = slots - 1;
+	}
+	
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 40) & mask;
+	}
+	
+	/** Returns the value of a word.
+	 * @param key The packed word
+	 * @return The value or <CODE>null</CODE> if the word is not cached
+	 */
+	Object get(long key) {
+		int slot = slot(key);
+		if (values[slot] != null && keys[slot] == key) {
+			counters.hits++;
+			return values[slot];
+		}
+		counters.misses++;
+		return null;
+	}
+	
+	/** Caches the value of a word.
+	 * @param key The packed word
+	 * @param value The value
+	 */
+	void put(long key, Object value) {
+		int slot = slot(key);
+		keys[slot] = key;
+		values[slot] = value;
+	}
+	
+	/** Returns the number of slots of a cache.
+	 * @param capacity The capacity of the cache
+	 * @return The capacity rounded up to a power of 2
+	 */
+	static int getSlots(int capacity) {
+		int slots = 1;
+		while (slots < capacity) slots <<= 1;
+		return slots;
+	}
+	
+	/** Returns the counters of the cache.
+	 * @return The counters
+	 */
+	Counters getCounters() {
+		return counters;
+	}
+	
+}
@@ -0,0 +1,198 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph;
+
+/** Converts words between arabic and the Buckwalter transliteration system, in a single pass over their chars.
+ * Both directions are driven by the same table of letters : every arabic char has its own latin char.
+ * <P>The romanization is made for morphological analysis : vowels, diacritics and tatweels are stripped
+ * in the same pass.</P>
+ * <P>The tables are only read : the conversions need no lock and can be run by several threads.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+final class Transliterator {
+	
+	/** The arabic letters and their Buckwalter transliteration. */
+	private static final char[][] LETTERS = {
+		{'\u0621', '\''}, //\u0621 : ARABIC LETTER HAMZA
+		{'\u0622', '|'}, //\u0622 : ARABIC LETTER ALEF WITH MADDA ABOVE
+		{'\u0623', '>'}, //\u0623 : ARABIC LETTER ALEF WITH HAMZA ABOVE
+		{'\u0624', '&'}, //\u0624 : ARABIC LETTER WAW WITH HAMZA ABOVE
+		{'\u0625', '<'}, //\u0625 : ARABIC LETTER ALEF WITH HAMZA BELOW
+		{'\u0626', '}'}, //\u0626 : ARABIC LETTER YEH WITH HAMZA ABOVE
+		{'\u0627', 'A'}, //\u0627 : ARABIC LETTER ALEF
+		{'\u0628', 'b'}, //\u0628 : ARABIC LETTER BEH
+		{'\u0629', 'p'}, //\u0629 : ARABIC LETTER TEH MARBUTA
+		{'\u062A', 't'}, //\u062A : ARABIC LETTER TEH
+		{'\u062B', 'v'}, //\u062B : ARABIC LETTER THEH
+		{'\u062C', 'j'}, //\u062C : ARABIC LETTER JEEM
+		{'\u062D', 'H'}, //\u062D : ARABIC LETTER HAH
+		{'\u062E', 'x'}, //\u062E : ARABIC LETTER KHAH
+		{'\u062F', 'd'}, //\u062F : ARABIC LETTER DAL
+		{'\u0630', '*'}, //\u0630 : ARABIC LETTER THAL
+		{'\u0631', 'r'}, //\u0631 : ARABIC LETTER REH
+		{'\u0632', 'z'}, //\u0632 : ARABIC LETTER ZAIN
+		{'\u0633', 's'}, //\u0633 : ARABIC LETTER SEEN
+		{'\u0634', '$'}, //\u0634 : ARABIC LETTER SHEEN
+		{'\u0635', 'S'}, //\u0635 : ARABIC LETTER SAD
+		{'\u0636', 'D'}, //\u0636 : ARABIC LETTER DAD
+		{'\u0637', 'T'}, //\u0637 : ARABIC LETTER TAH
+		{'\u0638', 'Z'}, //\u0638 : ARABIC LETTER ZAH
+		{'\u0639', 'E'}, //\u0639 : ARABIC LETTER AIN
+		{'\u063A', 'g'}, //\u063A : ARABIC LETTER GHAIN
+		{'\u0640', '_'}, //\u0640 : ARABIC TATWEEL
+		{'\u0641', 'f'}, //\u0641 : ARABIC LETTER FEH
+		{'\u0642', 'q'}, //\u0642 : ARABIC LETTER QAF
+		{'\u0643', 'k'}, //\u0643 : ARABIC LETTER KAF
+		{'\u0644', 'l'}, //\u0644 : ARABIC LETTER LAM
+		{'\u0645', 'm'}, //\u0645 : ARABIC LETTER MEEM
+		{'\u0646', 'n'}, //\u0646 : ARABIC LETTER NOON
+		{'\u0647', 'h'}, //\u0647 : ARABIC LETTER HEH
+		{'\u0648', 'w'}, //\u0648 : ARABIC LETTER WAW
+		{'\u0649', 'Y'}, //\u0649 : ARABIC LETTER ALEF MAKSURA
+		{'\u064A', 'y'}, //\u064A : ARABIC LETTER YEH
+		{'\u064B', 'F'}, //\u064B : ARABIC FATHATAN
+		{'\u064C', 'N'}, //\u064C : ARABIC DAMMATAN
+		{'\u064D', 'K'}, //\u064D : ARABIC KASRATAN
+		{'\u064E', 'a'}, //\u064E : ARABIC FATHA
+		{'\u064F', 'u'}, //\u064F : ARABIC DAMMA
+		{'\u0650', 'i'}, //\u0650 : ARABIC KASRA
+		{'\u0651', '~'}, //\u0651 : ARABIC SHADDA
+		{'\u0652', 'o'}, //\u0652 : ARABIC SUKUN
+		{'\u0670', '`'}, //\u0670 : ARABIC LETTER SUPERSCRIPT ALEF
+		{'\u0671', '{'}, //\u0671 : ARABIC LETTER ALEF WASLA
+		{'\u067E', 'P'}, //\u067E : ARABIC LETTER PEH
+		{'\u0686', 'J'}, //\u0686 : ARABIC LETTER TCHEH
+		{'\u06A4', 'V'}, //\u06A4 : ARABIC LETTER VEH
+		{'\u06AF', 'G'}, //\u06AF : ARABIC LETTER GAF
+		{'\u0698', 'R'}, //\u0698 : ARABIC LETTER JEH (no more in Buckwalter system)
+		{'\u060C', ','}, //\u060C : ARABIC COMMA
+		{'\u061B', ';'}, //\u061B : ARABIC SEMICOLON
+		{'\u061F', '?'}, //\u061F : ARABIC QUESTION MARK
+	};
+	//Not in Buckwalter system \u0679 : ARABIC LETTER TTEH
+	//Not in Buckwalter system \u0688 : ARABIC LETTER DDAL
+	//Not in Buckwalter system \u06A9 : ARABIC LETTER KEHEH
+	//Not in Buckwalter system \u0691 : ARABIC LETTER RREH
+	//Not in Buckwalter system \u06BA : ARABIC LETTER NOON GHUNNA
+	//Not in Buckwalter system \u06BE : ARABIC LETTER HEH DOACHASHMEE
+	//Not in Buckwalter system \u06C1 : ARABIC LETTER HEH GOAL
+	//Not in Buckwalter system \u06D2 : ARABIC LETTER YEH BARREE
+	/** Not suitable for morphological analysis : vowels/diacritics,
+	 * superscript alef and alef wasla (TODO : how to handle them ?) */
+	private static final String STRIPPED = "FNKaui~o`{";
+	
+	/** The first char of the arabic block. */
+	private static final char ARABIC_BLOCK = '\u0600';
+	/** A char that is stripped by the romanization. */
+	static final char STRIP = '\uFFFF';
+	/** The romanization of the arabic block, <CODE>0</CODE> when a char is left as is. */
+	private static final char[] romanTable = new char[256];
+	/** Whether or not each ASCII char is stripped by the romanization. */
+	private static final boolean[] strippedTable = new boolean[128];
+	/** The arabization of each ASCII char, <CODE>0</CODE> when a char is left as is. */
+	private static final char[] arabicTable = new char[128];
+	
+	static {
+		for (int i = 0 ; i < STRIPPED.length() ; i++) strippedTable[STRIPPED.charAt(i)] = true;
+		for (int i = 0 ; i < LETTERS.length ; i++) {
+			char arabic = LETTERS[i][0];
+			char roman = LETTERS[i][1];
+			romanTable[arabic - ARABIC_BLOCK] = strippedTable[roman] ? STRIP : roman;
+			arabicTable[roman] = arabic;
+		}
+		//Not significant for morphological analysis, unlike an underscore that is already romanized
+		romanTable['\u0640' - ARABIC_BLOCK] = STRIP; //\u0640 : ARABIC TATWEEL
+	}
+	
+	/** No instances. */
+	private Transliterator() {}
+	
+	/** Returns the romanization of a char, as {@link #romanize(CharSequence, StringBuffer)} does.
+	 * @param c The char
+	 * @return The romanized char or <CODE>'\uFFFF'</CODE> if it is stripped
+	 */
+	static char romanize(char c) {
+		if (c >= ARABIC_BLOCK && c < ARABIC_BLOCK + 256) {
+			char roman = romanTable[c - ARABIC_BLOCK];
+			if (roman != 0) return roman;
+		}
+		else if (c < 128 && strippedTable[c]) return STRIP;
+		return c;
+	}
+	
+	/** Romanizes a word : arabic chars are transliterated, vowels and diacritics are stripped,
+	 * whether they are in arabic or already romanized, and so are tatweels. Other chars are left as is.
+	 * @param word The word
+	 * @param buffer Where to append the romanized word
+	 */
+	static void romanize(CharSequence word, StringBuffer buffer) {
+		for (int i = 0 ; i < word.length() ; i++) {
+			char roman = romanize(word.charAt(i));
+			if (roman != STRIP) buffer.append(roman);
+		}
+	}
+	
+	/** Romanizes a word.
+	 * @param word The word
+	 * @return The romanized word
+	 * @see #romanize(CharSequence, StringBuffer)
+	 */
+	static String romanize(String word) {
+		char[] chars = new char[word.length()];
+		int length = 0;
+		for (int i = 0 ; i < word.length() ; i++) {
+			char roman = romanize(word.charAt(i));
+			if (roman != STRIP) chars[length++] = roman;
+		}
+		return new String(chars, 0, length);
+	}
+	
+	/** Arabizes a romanized word. Chars that are not in the Buckwalter transliteration system are left as is.
+	 * @param translitered The romanized word
+	 * @param buffer Where to append the word in arabic
+	 */
+	static void arabize(CharSequence translitered, StringBuffer buffer) {
+		for (int i = 0 ; i < translitered.length() ; i++) buffer.append(arabize(translitered.charAt(i)));
+	}
+	
+	/** Arabizes a romanized word.
+	 * @param translitered The romanized word
+	 * @return The word in arabic
+	 * @see #arabize(CharSequence, StringBuffer)
+	 */
+	static String arabize(String translitered) {
+		char[] chars = new char[translitered.length()];
+		for (int i = 0 ; i < chars.length ; i++) chars[i] = arabize(translitered.charAt(i));
+		return new String(chars);
+	}
+	
+	private static char arabize(char c) {
+		if (c < 128 && arabicTable[c] != 0) return arabicTable[c];
+		return c;
+	}
+	
+}
@@ -0,0 +1,122 @@
+/*
+Copyright (C) 2003  Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org),
+(c) 2002 Trustees of the University of Pennsylvania
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+
+package gpl.pierrick.brihaye.aramorph;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A set of romanized words. Words are {@link PackedWord packed} into <CODE>long</CODE> keys, stored in open addressing :
+ * probing a word needs neither to hash nor to compare <CODE>String</CODE>s. Words that can not be packed are kept in an overflow map.
+ * <P>Instances are thread-safe. Probing takes no lock : the keys are published one by one and the table is replaced,
+ * never modified, when it grows. Adding a word takes the table's lock.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+class WordTable {
+	
+	/** An empty slot. */
+	private static final long EMPTY = PackedWord.OVERFLOW;
+	
+	private volatile AtomicLongArray keys;
+	/** The number of packed words. */
+	private volatile int packed = 0;
+	/** The words that can not be packed. */
+	private ConcurrentHashMap overflow = new ConcurrentHashMap();
+	
+	/** Constructs an empty table. */
+	WordTable() {
+		keys = allocate(64);
+	}
+	
+	private static AtomicLongArray allocate(int capacity) {
+		long[] empty = new long[capacity];
+		Arrays.fill(empty, EMPTY);
+		return new AtomicLongArray(empty);
+	}
+	
+	/** Returns the slot of a key : the one where it is or where it should be inserted. */
+	private static int slot(AtomicLongArray keys, long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		int mask = keys.length() - 1;
+		int slot = (int)(h >>> 40) & mask;
+		long k;
+		while ((k = keys.get(slot)) != EMPTY && k != key) slot = (slot + 1) & mask;
+		return slot;
+	}
+	
+	private static AtomicLongArray grow(AtomicLongArray oldKeys) {
+		AtomicLongArray newKeys = allocate(oldKeys.length() * 2);
+		for (int i = 0 ; i < oldKeys.length() ; i++) {
+			long key = oldKeys.get(i);
+			if (key != EMPTY) newKeys.set(slot(newKeys, key), key);
+		}
+		return newKeys;
+	}
+	
+	/** Whether or not a word is in the table. A word that is being added by another thread may be missed.
+	 * @param word The word
+	 * @return The result
+	 */
+	boolean containsKey(String word) {
+		long key = PackedWord.pack(word);
+		if (key == PackedWord.OVERFLOW) return overflow.containsKey(word);
+		AtomicLongArray current = keys;
+		return current.get(slot(current, key)) != EMPTY;
+	}
+	
+	/** Adds a word to the table.
+	 * @param word The word
+	 * @return Whether or not the word has been added, i.e. was not already in the table
+	 */
+	boolean add(String word) {
+		long key = PackedWord.pack(word);
+		if (key == PackedWord.OVERFLOW) return overflow.putIfAbsent(word, word) == null;
+		synchronized (this) {
+			AtomicLongArray current = keys;
+			int slot = slot(current, key);
+			if (current.get(slot) != EMPTY) return false;
+			//keep the load factor under 2/3
+			if (3 * (packed + 1) > 2 * current.length()) {
+				current = grow(current);
+				slot = slot(current, key);
+				keys = current;
+			}
+			current.set(slot, key);
+			packed++;
+			return true;
+		}
+	}
+	
+	/** Returns the number of words in the table.
+	 * @return The number of words
+	 */
+	int size() {
+		return packed + overflow.size();
+	}
+	
+}
@@ -0,0 +1,129 @@
+/*
+Copyright (C) 2003-2004 Pierrick Brihaye
+pierrick.brihaye@wanadoo.fr
+ 
+Original Perl code :
+Portions (c) 2002 QAMUS LLC (www.qamus.org), 
+(c) 2002 Trustees of the University of Pennsylvania 
+ 
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+See the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the
+Free Software Foundation, Inc.
+59 Temple Place - Suite 330, Boston, MA  02111-1307, USA
+or connect to:
+http://www.fsf.org/copyleft/gpl.html
+*/
+
+package gpl.pierrick.brihaye.aramorph.test;
+
+import gpl.pierrick.brihaye.aramorph.AraMorph;
+import gpl.pierrick.brihaye.aramorph.lucene.ArabicTokenizer;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.analysis.TokenStream;
+
+/** Convenient class for measuring the time and memory the arabic analyzer spends by token.
+ * <P>The tokens of the file are analyzed several times, each time by a new analyzer. The solutions of the words
+ * are kept from an analyzer to another : the first pass analyzes every word whereas the next ones mostly
+ * segment again the words that have no solution.</P>
+ * <P>The allocated bytes are measured by the JVM, when it supports it. The romanization of the tokens is measured
+ * apart, since it weighs on every pass.</P>
+ * @author Pierrick Brihaye, 2003
+ */
+public class BenchmarkAraMorph {
+	
+	/** Display help for command line interface. */
+	private static void PrintUsage() {
+		System.err.println("Usage :");
+		System.err.println("");
+		System.err.println("BenchmarkAraMorph inFile [inEncoding] [passes]");
+		System.err.println("");
+		System.err.println("inFile : file to be analyzed");
+		System.err.println("inEncoding : encoding for inFile, default CP1256");
+		System.err.println("passes : number of passes, default 5");
+	}
+	
+	/** Returns the number of bytes allocated so far by the current thread.
+	 * @return The number of bytes or <CODE>-1</CODE> if the JVM does not support it
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+		if (!sunBean.isThreadAllocatedMemorySupported()) return -1;
+		return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/** Entry point for command line interface.
+	 * @param args Arguments
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0 || args.length > 3) {
+			PrintUsage();
+			return;
+		}
+		String inputFile = args[0];
+		String inputEncoding = args.length > 1 ? args[1] : "Cp1256";
+		int passes = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		
+		ArrayList tokens = new ArrayList();
+		BufferedReader IN = null;
+		try {
+			IN = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), inputEncoding));
+			TokenStream tokenStream = new ArabicTokenizer(IN);
+			Token token = tokenStream.next();
+			while (token != null) {
+				tokens.add(token.termText());
+				token = tokenStream.next();
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Problem : " + e.getMessage());
+		}
+		finally {
+			try {
+				if (IN != null) IN.close();
+			}
+			catch (IOException e) {}
+		}
+		
+		//loads the dictionaries
+		new AraMorph();
+		DecimalFormat df = new DecimalFormat("#,##0.0");
+		for (int pass = 1 ; pass <= passes ; pass++) {
+			AraMorph araMorph = new AraMorph();
+			long bytes = getAllocatedBytes();
+			long time = System.currentTimeMillis();
+			for (int i = 0 ; i < tokens.size() ; i++) araMorph.analyzeToken((String)tokens.get(i));
+			time = System.currentTimeMillis() - time;
+			if (bytes != -1) bytes = getAllocatedBytes() - bytes;
+			System.out.println("Pass " + pass + " : " + tokens.size() + " tokens in " + time + " ms, "
+				+ df.format(1000.0 * time / tokens.size()) + " \u00B5s/token"
+				+ (bytes == -1 ? "" : ", " + df.format((double)bytes / tokens.size()) + " bytes/token"));
+		}
+		long bytes = getAllocatedBytes();
+		long time = System.currentTimeMillis();
+		for (int i = 0 ; i < tokens.size() ; i++) AraMorph.romanizeWord((String)tokens.get(i));
+		time = System.currentTimeMillis() - time;
+		if (bytes != -1) bytes = getAllocatedBytes() - bytes;
+		System.out.println("Romanization only : " + tokens.size() + " tokens in " + time + " ms, "
+			+ df.format(1000.0 * time / tokens.size()) + " \u00B5s/token"
+			+ (bytes == -1 ? "" : ", " + df.format((double)bytes / tokens.size()) + " bytes/token"));
+	}
+}